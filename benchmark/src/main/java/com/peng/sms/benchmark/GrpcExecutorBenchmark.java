@@ -0,0 +1,55 @@
+package com.peng.sms.benchmark;
+
+import com.peng.sms.UserClient;
+import com.peng.sms.UserServer;
+import com.peng.sms.UserServerConfig;
+import com.peng.sms.UserServiceOuterClass;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * grbc-lab {@code GetUser} against each {@link UserServerConfig.ExecutorMode}. All benchmark threads
+ * share one {@link UserClient}, so concurrency shows up as many streams on a few connections, the
+ * shape under which executor hand-offs dominate the tail.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GrpcExecutorBenchmark {
+
+    private static final int PORT = 50151;
+
+    @Param({"DEFAULT", "DIRECT", "FORK_JOIN", "VIRTUAL_THREAD"})
+    public UserServerConfig.ExecutorMode executor;
+
+    // 0 keeps Netty's default worker count
+    @Param({"0"})
+    public int workerThreads;
+
+    UserClient client;
+
+    @Setup(Level.Trial)
+    public void start() {
+        UserServerConfig.Builder config = UserServerConfig.builder().port(PORT).executor(executor);
+        if (workerThreads > 0) {
+            config.eventLoops(1, workerThreads);
+        }
+        UserServer.start(config.build());
+        client = new UserClient("localhost", PORT);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        client.close();
+        UserServer.stop();
+    }
+
+    @Benchmark
+    public UserServiceOuterClass.UserResponse getUser() {
+        return client.getUser(12);
+    }
+}
@@ -0,0 +1,84 @@
+package com.peng.sms.benchmark;
+
+import com.peng.sms.UserServer;
+import com.peng.sms.UserServiceGrpc;
+import com.peng.sms.UserServiceOuterClass;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * grbc-lab {@code UserService} through a blocking stub, one channel per benchmark thread.
+ * {@code getUser} has fixed-size messages; {@code batchGetUsers} varies the payload with {@code batchSize}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class GrpcGetUserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        @Setup(Level.Trial)
+        public void start() {
+            UserServer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            UserServer.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        ManagedChannel channel;
+        UserServiceGrpc.UserServiceBlockingStub stub;
+        UserServiceOuterClass.UserRequest request;
+
+        @Setup(Level.Trial)
+        public void connect(ServerState server) {
+            channel = ManagedChannelBuilder.forAddress("localhost", 50051).usePlaintext().build();
+            stub = UserServiceGrpc.newBlockingStub(channel);
+            request = UserServiceOuterClass.UserRequest.newBuilder().setUserId(12).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            channel.shutdownNow();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BatchState {
+
+        @Param({"10", "100", "1000"})
+        public int batchSize;
+
+        UserServiceOuterClass.BatchGetUsersRequest request;
+
+        @Setup(Level.Trial)
+        public void build() {
+            UserServiceOuterClass.BatchGetUsersRequest.Builder builder = UserServiceOuterClass.BatchGetUsersRequest.newBuilder();
+            for (int i = 0; i < batchSize; i++) {
+                builder.addUserIds(i);
+            }
+            request = builder.build();
+        }
+    }
+
+    @Benchmark
+    public UserServiceOuterClass.UserResponse getUser(ClientState state) {
+        return state.stub.getUser(state.request);
+    }
+
+    @Benchmark
+    public UserServiceOuterClass.BatchGetUsersResponse batchGetUsers(ClientState state, BatchState batch) {
+        return state.stub.batchGetUsers(batch.request);
+    }
+}
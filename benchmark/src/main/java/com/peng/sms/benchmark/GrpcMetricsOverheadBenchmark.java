@@ -0,0 +1,82 @@
+package com.peng.sms.benchmark;
+
+import com.peng.sms.UserClient;
+import com.peng.sms.UserServer;
+import com.peng.sms.UserServerConfig;
+import com.peng.sms.UserServiceGrpc;
+import com.peng.sms.UserServiceOuterClass;
+import com.peng.sms.metrics.MethodMetrics;
+import com.peng.sms.metrics.MetricsClientInterceptor;
+import com.peng.sms.metrics.RpcMetrics;
+import io.grpc.ClientInterceptor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the grbc-lab metrics interceptors. {@code getUser} compares a full {@code GetUser} round
+ * trip with the server and client interceptors off and on; {@code recordCall} isolates the
+ * bookkeeping one intercepted unary call does on one side, without any network in the way.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class GrpcMetricsOverheadBenchmark {
+
+    private static final int PORT = 50152;
+
+    @State(Scope.Benchmark)
+    public static class RoundTripState {
+
+        @Param({"false", "true"})
+        public boolean metrics;
+
+        UserClient client;
+
+        @Setup(Level.Trial)
+        public void start() {
+            UserServer.start(UserServerConfig.builder().port(PORT).metrics(metrics).build());
+            ClientInterceptor[] interceptors = metrics
+                    ? new ClientInterceptor[]{new MetricsClientInterceptor(new RpcMetrics("client"))}
+                    : new ClientInterceptor[0];
+            client = new UserClient("localhost", PORT, 2, interceptors);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            client.close();
+            UserServer.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RecordState {
+
+        MethodMetrics method;
+        int requestBytes;
+        int responseBytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            method = new RpcMetrics("bench").method(UserServiceGrpc.getGetUserMethod().getFullMethodName());
+            requestBytes = UserServiceOuterClass.UserRequest.newBuilder().setUserId(12).build().getSerializedSize();
+            responseBytes = 28;
+        }
+    }
+
+    @Benchmark
+    public UserServiceOuterClass.UserResponse getUser(RoundTripState state) {
+        return state.client.getUser(12);
+    }
+
+    @Benchmark
+    public void recordCall(RecordState state) {
+        long start = System.nanoTime();
+        state.method.callStarted();
+        state.method.messageReceived(state.requestBytes);
+        state.method.messageSent(state.responseBytes);
+        state.method.callFinished(System.nanoTime() - start, true);
+    }
+}
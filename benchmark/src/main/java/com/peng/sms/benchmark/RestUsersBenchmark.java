@@ -0,0 +1,48 @@
+package com.peng.sms.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * rest-api-lab {@code /api/users} endpoints over keep-alive HTTP/1.1.
+ * rest-api-lab is a standalone Spring Boot app, so start it first (port 19002) or pass {@code -p baseUrl=...}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RestUsersBenchmark {
+
+    @Param({"http://localhost:19002"})
+    public String baseUrl;
+
+    // the single-user read and the whole collection are the small and large payloads
+    @Param({"/api/users/20253000", "/api/users"})
+    public String path;
+
+    HttpClient client;
+    HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    @Benchmark
+    public String getUsers() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + path + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,73 @@
+package com.peng.sms.benchmark;
+
+import com.peng.sms.LineClient;
+import com.peng.sms.NioServer;
+import com.peng.sms.VirtualThreadServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.peng.sms.CommonConstant.LOCAL_HOST;
+
+/**
+ * socket-base uppercase echo over one persistent connection per benchmark thread.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SocketEchoBenchmark {
+
+    static final int PORT = 18107;
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        @Param({"NIO", "VIRTUAL_THREAD"})
+        public String serverMode;
+
+        @Setup(Level.Trial)
+        public void start() throws InterruptedException {
+            Thread server = "NIO".equals(serverMode)
+                    ? new Thread(() -> NioServer.startServer(PORT, Runtime.getRuntime().availableProcessors()), "NioServer")
+                    : new Thread(() -> VirtualThreadServer.startServer(PORT), "VirtualThreadServer");
+            server.setDaemon(true);
+            server.start();
+            Thread.sleep(500);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            NioServer.stop();
+            VirtualThreadServer.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        @Param({"16", "1024", "16384"})
+        public int payloadSize;
+
+        LineClient client;
+        String payload;
+
+        @Setup(Level.Trial)
+        public void connect(ServerState server) throws IOException {
+            client = new LineClient(LOCAL_HOST, PORT);
+            payload = "x".repeat(payloadSize);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public String echo(ClientState state) throws IOException {
+        return state.client.send(state.payload);
+    }
+}
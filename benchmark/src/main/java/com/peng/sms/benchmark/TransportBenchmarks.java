@@ -0,0 +1,36 @@
+package com.peng.sms.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the transport benchmarks once per concurrency level. Throughput mode reports ops/us;
+ * SampleTime mode reports p50/p90/p99/p99.9 latency. Any JMH options given on the command line
+ * (e.g. a benchmark regex, {@code -p payloadSize=1024}) apply to every level.
+ * <pre>
+ * java -jar benchmark/target/benchmarks.jar [jmh options]
+ * </pre>
+ */
+public class TransportBenchmarks {
+
+    private static final int[] CONCURRENCY_LEVELS = {1, 16, 64};
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        for (int threads : CONCURRENCY_LEVELS) {
+            System.out.println("--------------------------------------- concurrency " + threads + " ---------------------------------------");
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLine);
+            if (commandLine.getIncludes().isEmpty()) {
+                options.include(SocketEchoBenchmark.class.getSimpleName())
+                        .include(GrpcGetUserBenchmark.class.getSimpleName())
+                        .include(GrpcExecutorBenchmark.class.getSimpleName())
+                        .include(RestUsersBenchmark.class.getSimpleName());
+            }
+            new Runner(options.threads(threads).build()).run();
+        }
+    }
+}
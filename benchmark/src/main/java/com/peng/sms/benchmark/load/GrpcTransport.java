@@ -0,0 +1,25 @@
+package com.peng.sms.benchmark.load;
+
+import com.peng.sms.UserClient;
+
+/**
+ * grbc-lab {@code UserService.GetUser} through one shared {@link UserClient}.
+ */
+public class GrpcTransport implements Transport {
+
+    private final UserClient client;
+
+    public GrpcTransport(String host, int port) {
+        this.client = new UserClient(host, port);
+    }
+
+    @Override
+    public void call() {
+        client.getUser(12);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        client.close();
+    }
+}
@@ -0,0 +1,30 @@
+package com.peng.sms.benchmark.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * HTTP GET of one URL over keep-alive connections: the rest-api-lab {@code /api/users}
+ * endpoints or the lab4 gateway routes ({@code /users}, {@code /orders}).
+ */
+public class HttpTransport implements Transport {
+
+    private final HttpClient client;
+    private final HttpRequest request;
+
+    public HttpTransport(String url) {
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    @Override
+    public void call() throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 400) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+    }
+}
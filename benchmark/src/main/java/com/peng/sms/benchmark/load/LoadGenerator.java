@@ -0,0 +1,116 @@
+package com.peng.sms.benchmark.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link Transport} at a fixed target rate with a bounded pool of workers.
+ * <p>
+ * Request {@code i} is scheduled for {@code start + i / rate}. Its latency is measured from that
+ * intended start, not from when a worker got round to sending it, so time a request spends queued
+ * behind a slow one is counted instead of silently omitted (coordinated omission). The raw
+ * service time is recorded separately for comparison.
+ */
+public class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Transport transport;
+    private final int workers;
+
+    public LoadGenerator(Transport transport, int workers) {
+        this.transport = transport;
+        this.workers = workers;
+    }
+
+    /**
+     * Runs {@code warmup} unrecorded, then {@code duration} recorded, both at {@code targetRate} requests/second.
+     */
+    public Result run(int targetRate, Duration warmup, Duration duration) throws InterruptedException {
+        checkRate(targetRate);
+        if (!warmup.isZero()) {
+            drive(targetRate, warmup);
+        }
+        return drive(targetRate, duration);
+    }
+
+    /**
+     * Rejects rates that give no usable schedule: below 1/s, or above one request per nanosecond.
+     */
+    public static int checkRate(int targetRate) {
+        if (targetRate < 1 || targetRate > TimeUnit.SECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("target rate must be between 1 and 1000000000 requests/second: " + targetRate);
+        }
+        return targetRate;
+    }
+
+    private Result drive(int targetRate, Duration duration) throws InterruptedException {
+        Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        Histogram service = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        LongAdder errors = new LongAdder();
+        AtomicLong sequence = new AtomicLong();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / targetRate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            Thread worker = new Thread(() -> {
+                while (true) {
+                    long intended = start + sequence.getAndIncrement() * intervalNanos;
+                    if (intended >= end) {
+                        return;
+                    }
+                    // - Wait for the slot; if we are already late, send immediately
+                    long wait;
+                    while ((wait = intended - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long sent = System.nanoTime();
+                    try {
+                        transport.call();
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    long done = System.nanoTime();
+                    corrected.recordValue(Math.min(done - intended, HIGHEST_TRACKABLE_NANOS));
+                    service.recordValue(Math.min(done - sent, HIGHEST_TRACKABLE_NANOS));
+                }
+            }, "load-worker-" + w);
+            threads.add(worker);
+            worker.start();
+        }
+        for (Thread worker : threads) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(targetRate, corrected, service, errors.sum(), elapsed);
+    }
+
+    /**
+     * Latencies of one run, in nanoseconds.
+     */
+    public record Result(int targetRate, Histogram latency, Histogram serviceTime, long errors, long elapsedNanos) {
+
+        public double achievedRate() {
+            return latency.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        public double percentileMillis(double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1_000_000.0;
+        }
+
+        public double serviceTimePercentileMillis(double percentile) {
+            return serviceTime.getValueAtPercentile(percentile) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.peng.sms.benchmark.load;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.peng.sms.CommonConstant.LOCAL_HOST;
+import static com.peng.sms.CommonConstant.SERVER_PORT;
+
+/**
+ * Sweeps target rates against one transport and prints a latency-vs-throughput table.
+ * <pre>
+ * java -cp benchmark/target/benchmarks.jar com.peng.sms.benchmark.load.LoadGeneratorMain \
+ *      &lt;socket|grpc|http&gt; [target] [rates] [seconds] [workers]
+ *
+ *   socket  target = host:port              (default localhost:18007)
+ *   grpc    target = host:port              (default localhost:50051)
+ *   http    target = URL                    (default http://localhost:19002/api/users,
+ *                                            or a gateway route such as http://localhost:8080/users)
+ *   rates   comma separated requests/second (default 1000,5000,10000,20000)
+ * </pre>
+ * The full corrected distribution of every rate is written to {@code load-<transport>-<rate>.hgrm}
+ * for plotting with the HdrHistogram plotter.
+ */
+public class LoadGeneratorMain {
+
+    public static void main(String[] args) throws Exception {
+        String kind = args.length > 0 ? args[0] : "socket";
+        String target = args.length > 1 ? args[1] : null;
+        // - Parse and check every rate before connecting, so a bad one fails at startup
+        int[] rates = Arrays.stream((args.length > 2 ? args[2] : "1000,5000,10000,20000").split(","))
+                .mapToInt(rate -> LoadGenerator.checkRate(Integer.parseInt(rate.trim())))
+                .toArray();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int workers = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+        System.out.println("--------------------------------------- load test: " + kind + " ---------------------------------------");
+        System.out.printf("%10s %10s %8s %10s %10s %10s %10s %12s%n",
+                "target/s", "actual/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+
+        try (Transport transport = open(kind, target, workers)) {
+            LoadGenerator generator = new LoadGenerator(transport, workers);
+            for (int targetRate : rates) {
+                LoadGenerator.Result result = generator.run(targetRate, Duration.ofSeconds(5), Duration.ofSeconds(seconds));
+                System.out.printf("%10d %10.0f %8d %10.3f %10.3f %10.3f %10.3f %12.3f%n",
+                        targetRate, result.achievedRate(), result.errors(),
+                        result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9),
+                        result.latency().getMaxValue() / 1_000_000.0, result.serviceTimePercentileMillis(99));
+                writeDistribution(kind, result);
+            }
+        }
+    }
+
+    private static Transport open(String kind, String target, int workers) {
+        switch (kind) {
+            case "socket": {
+                String[] hostPort = (target != null ? target : LOCAL_HOST + ":" + SERVER_PORT).split(":");
+                return new SocketTransport(hostPort[0], Integer.parseInt(hostPort[1]), workers, 16);
+            }
+            case "grpc": {
+                String[] hostPort = (target != null ? target : "localhost:50051").split(":");
+                return new GrpcTransport(hostPort[0], Integer.parseInt(hostPort[1]));
+            }
+            case "http":
+                return new HttpTransport(target != null ? target : "http://localhost:19002/api/users");
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + kind);
+        }
+    }
+
+    private static void writeDistribution(String kind, LoadGenerator.Result result) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream("load-" + kind + "-" + result.targetRate() + ".hgrm"))) {
+            // nanoseconds in, milliseconds out
+            result.latency().outputPercentileDistribution(out, 1_000_000.0);
+        }
+    }
+}
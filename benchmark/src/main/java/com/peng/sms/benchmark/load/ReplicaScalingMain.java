@@ -0,0 +1,124 @@
+package com.peng.sms.benchmark.load;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.peng.sms.UserServiceOuterClass;
+import com.peng.sms.lb.BalancedUserClient;
+import com.peng.sms.lb.BalancingPolicy;
+import com.peng.sms.lb.StaticEndpointResolver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-process scaling check for {@link BalancedUserClient}: for each replica count, starts that many
+ * {@code UserServer} JVMs on consecutive ports, drives {@code GetUser} through the balanced client with
+ * a fixed number of calls in flight, and prints the throughput next to the single-replica baseline.
+ * <pre>
+ * java -cp benchmark/target/benchmarks.jar com.peng.sms.benchmark.load.ReplicaScalingMain [replicas=1,2,4] [seconds=10] [inFlight=256] [policy=LEAST_OUTSTANDING]
+ * </pre>
+ * Replicas share this host's cores with each other and with the load generator, so scaling flattens
+ * once they run out; use a machine with spare cores per replica.
+ */
+public class ReplicaScalingMain {
+
+    private static final int BASE_PORT = 50251;
+
+    public static void main(String[] args) throws Exception {
+        int[] replicaCounts = Arrays.stream((args.length > 0 ? args[0] : "1,2,4").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int inFlight = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        BalancingPolicy policy = BalancingPolicy.valueOf(args.length > 3 ? args[3] : "LEAST_OUTSTANDING");
+
+        System.out.printf("%-9s %14s %9s%n", "replicas", "calls/s", "speedup");
+        double baseline = 0;
+        for (int replicas : replicaCounts) {
+            List<Process> servers = startReplicas(replicas);
+            try {
+                double throughput = drive(replicas, seconds, inFlight, policy);
+                if (baseline == 0) {
+                    baseline = throughput / replicas;
+                }
+                System.out.printf("%-9d %14.0f %8.2fx%n", replicas, throughput, throughput / baseline);
+            } finally {
+                for (Process server : servers) {
+                    server.destroy();
+                }
+                for (Process server : servers) {
+                    server.waitFor(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    private static List<Process> startReplicas(int replicas) throws IOException, InterruptedException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        List<Process> servers = new ArrayList<>();
+        for (int i = 0; i < replicas; i++) {
+            servers.add(new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                    "com.peng.sms.UserServer", String.valueOf(BASE_PORT + i))
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start());
+        }
+        for (int i = 0; i < replicas; i++) {
+            awaitPort(BASE_PORT + i);
+        }
+        return servers;
+    }
+
+    private static double drive(int replicas, int seconds, int inFlight, BalancingPolicy policy) throws InterruptedException {
+        StringBuilder targets = new StringBuilder();
+        for (int i = 0; i < replicas; i++) {
+            targets.append(i == 0 ? "" : ",").append("localhost:").append(BASE_PORT + i);
+        }
+        try (BalancedUserClient client = new BalancedUserClient(new StaticEndpointResolver(targets.toString()), policy)) {
+            // one second of warm-up, then the measured window
+            run(client, 1, inFlight);
+            LongAdder completed = run(client, seconds, inFlight);
+            return completed.sum() / (double) seconds;
+        }
+    }
+
+    // keeps exactly inFlight calls outstanding until the window closes
+    private static LongAdder run(BalancedUserClient client, int seconds, int inFlight) throws InterruptedException {
+        Semaphore permits = new Semaphore(inFlight);
+        LongAdder completed = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        int userId = 0;
+        while (System.nanoTime() < end) {
+            if (!permits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            ListenableFuture<UserServiceOuterClass.UserResponse> response = client.getUserFuture(userId++ & 0xFFFF);
+            response.addListener(() -> {
+                completed.increment();
+                permits.release();
+            }, Runnable::run);
+        }
+        permits.acquire(inFlight);
+        return completed;
+    }
+
+    private static void awaitPort(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            try (Socket ignored = new Socket()) {
+                ignored.connect(new InetSocketAddress("localhost", port), 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("UserServer on port " + port + " did not start");
+    }
+}
@@ -0,0 +1,28 @@
+package com.peng.sms.benchmark.load;
+
+import com.peng.sms.ClientPool;
+
+/**
+ * socket-base line protocol, one pooled connection per concurrent worker.
+ * Needs the server in NIO or VIRTUAL_THREAD mode.
+ */
+public class SocketTransport implements Transport {
+
+    private final ClientPool pool;
+    private final String message;
+
+    public SocketTransport(String host, int port, int connections, int payloadSize) {
+        this.pool = new ClientPool(host, port, connections);
+        this.message = "x".repeat(payloadSize);
+    }
+
+    @Override
+    public void call() throws Exception {
+        pool.send(message);
+    }
+
+    @Override
+    public void close() throws Exception {
+        pool.close();
+    }
+}
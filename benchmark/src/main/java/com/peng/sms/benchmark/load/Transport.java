@@ -0,0 +1,14 @@
+package com.peng.sms.benchmark.load;
+
+/**
+ * One request/response against a system under test. Implementations must be safe to call
+ * from many load-generator workers at once.
+ */
+public interface Transport extends AutoCloseable {
+
+    void call() throws Exception;
+
+    @Override
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,181 @@
+package com.peng.sms;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded LRU cache of {@code GetUser} responses with a time-to-live. Concurrent misses for the
+ * same id are coalesced: the first caller runs the lookup, the others wait for its result
+ * (single-flight), so a burst on a cold id costs one backend lookup.
+ * <p>
+ * Ids are spread over independently locked LRU segments, so hits on different ids rarely
+ * contend; eviction is least-recently-used within a segment. {@link #invalidate} only affects
+ * its own id: it drops the cached entry and detaches any lookup in flight for it, whose result
+ * is then neither cached nor handed to callers that were waiting on it (they look up again).
+ */
+public class UserCache {
+
+    // segments hold at least this many entries, so small caches stay one exact LRU
+    private static final int MIN_SEGMENT_ENTRIES = 64;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final ConcurrentMap<Integer, Load> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public UserCache(int maxEntries, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+        }
+    }
+
+    public UserServiceOuterClass.UserResponse get(int userId, IntFunction<UserServiceOuterClass.UserResponse> loader) {
+        Segment segment = segmentFor(userId);
+        while (true) {
+            long now = System.nanoTime();
+            synchronized (segment) {
+                Entry entry = segment.get(userId);
+                if (entry != null) {
+                    if (now - entry.loadedAt < ttlNanos) {
+                        hits.increment();
+                        return entry.value;
+                    }
+                    segment.remove(userId);
+                }
+            }
+
+            Load mine = new Load();
+            Load leader = inFlight.putIfAbsent(userId, mine);
+            if (leader != null) {
+                coalesced.increment();
+                UserServiceOuterClass.UserResponse value = join(leader);
+                if (!leader.invalidated) {
+                    return value;
+                }
+                // a write landed while we waited: its result may predate the write, look up again
+                continue;
+            }
+
+            misses.increment();
+            try {
+                UserServiceOuterClass.UserResponse value = loader.apply(userId);
+                synchronized (segment) {
+                    // invalidate() marks the load under the same lock, so a racing write is never cached over
+                    if (!mine.invalidated) {
+                        segment.put(userId, new Entry(value, now));
+                    }
+                }
+                mine.future.complete(value);
+                return value;
+            } catch (RuntimeException e) {
+                mine.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(userId, mine);
+            }
+        }
+    }
+
+    public void invalidate(int userId) {
+        Segment segment = segmentFor(userId);
+        synchronized (segment) {
+            segment.remove(userId);
+            Load load = inFlight.remove(userId);
+            if (load != null) {
+                load.invalidated = true;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // lookups that waited on another caller's backend lookup instead of running their own
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public double hitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum() + coalesced.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, coalesced=%d, hitRate=%.3f, size=%d",
+                hits(), misses(), coalesced(), hitRate(), size());
+    }
+
+    private Segment segmentFor(int userId) {
+        // sequential ids would otherwise fill the segments in stripes
+        int mixed = userId * 0x9E3779B9;
+        return segments[(mixed ^ (mixed >>> 16)) & (segments.length - 1)];
+    }
+
+    private static UserServiceOuterClass.UserResponse join(Load load) {
+        try {
+            return load.future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * One backend lookup that callers of the same id can wait on.
+     */
+    private static final class Load {
+        final CompletableFuture<UserServiceOuterClass.UserResponse> future = new CompletableFuture<>();
+        // set by invalidate(), under the id's segment lock
+        volatile boolean invalidated;
+    }
+
+    /**
+     * Access-ordered LRU for the ids hashed to it, guarded by itself.
+     */
+    private static final class Segment extends LinkedHashMap<Integer, Entry> {
+        private final int maxEntries;
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private record Entry(UserServiceOuterClass.UserResponse value, long loadedAt) {
+    }
+}
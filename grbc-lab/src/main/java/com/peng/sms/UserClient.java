@@ -1,34 +1,141 @@
 package com.peng.sms;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
 import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
 import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.grpc.stub.StreamObserver;
 
-public class UserClient {
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-    public static void startClient() {
+/**
+ * Long-lived client for {@code UserService}. Owns a few HTTP/2 channels on one shared
+ * Netty event-loop group (epoll when available, NIO otherwise) and hands out stubs over
+ * them round-robin, so thousands of concurrent calls multiplex over a handful of connections.
+ * Create once, share across threads, and close on shutdown.
+ */
+public class UserClient implements AutoCloseable {
 
-        Thread.currentThread().setName("UserClient");
-        long start = System.currentTimeMillis();
+    private static final int DEFAULT_CHANNELS = 2;
+    // per-stream HTTP/2 window; large enough that streamed batches are not throttled by window updates
+    private static final int FLOW_CONTROL_WINDOW = 4 * 1024 * 1024;
+    private static final int MAX_INBOUND_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    private final EventLoopGroup eventLoopGroup;
+    private final ManagedChannel[] channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public UserClient(String host, int port) {
+        this(host, port, DEFAULT_CHANNELS);
+    }
+
+    public UserClient(String host, int port, int channelCount) {
+        this(host, port, channelCount, new ClientInterceptor[0]);
+    }
+
+    /**
+     * @param interceptors applied to every channel, e.g. a {@link com.peng.sms.metrics.MetricsClientInterceptor}
+     */
+    public UserClient(String host, int port, int channelCount, ClientInterceptor... interceptors) {
+        this.eventLoopGroup = newEventLoopGroup();
+        this.channels = new ManagedChannel[Math.max(1, channelCount)];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = newChannel(host, port, eventLoopGroup, interceptors);
+        }
+    }
 
-        ManagedChannel channel = ManagedChannelBuilder
-                .forAddress("localhost", 50051)
+    /**
+     * Event-loop group for {@link #newChannel}: epoll when available, NIO otherwise. Daemon threads,
+     * so a client that is never closed does not keep the JVM alive.
+     */
+    public static EventLoopGroup newEventLoopGroup() {
+        DefaultThreadFactory threads = new DefaultThreadFactory("user-client", true);
+        return Epoll.isAvailable() ? new EpollEventLoopGroup(0, threads) : new NioEventLoopGroup(0, threads);
+    }
+
+    /**
+     * One tuned HTTP/2 channel to {@code host:port} on {@code eventLoopGroup}, shared by the balanced client as well.
+     */
+    public static ManagedChannel newChannel(String host, int port, EventLoopGroup eventLoopGroup, ClientInterceptor... interceptors) {
+        return NettyChannelBuilder.forAddress(host, port)
+                .eventLoopGroup(eventLoopGroup)
+                .channelType(eventLoopGroup instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class)
                 .usePlaintext()
+                // ping idle connections so NATs and load balancers do not silently drop them
+                .keepAliveTime(30, TimeUnit.SECONDS)
+                .keepAliveTimeout(10, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .flowControlWindow(FLOW_CONTROL_WINDOW)
+                .maxInboundMessageSize(MAX_INBOUND_MESSAGE_SIZE)
+                .intercept(interceptors)
                 .build();
+    }
+
+    public UserServiceGrpc.UserServiceBlockingStub blockingStub() {
+        return UserServiceGrpc.newBlockingStub(nextChannel());
+    }
 
-        try {
-            UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
-            UserServiceOuterClass.UserRequest request = UserServiceOuterClass.UserRequest.newBuilder()
-                    .setUserId(12)
-                    .build();
-            UserServiceOuterClass.UserResponse response = stub.getUser(request);
+    public UserServiceGrpc.UserServiceStub asyncStub() {
+        return UserServiceGrpc.newStub(nextChannel());
+    }
+
+    public UserServiceGrpc.UserServiceFutureStub futureStub() {
+        return UserServiceGrpc.newFutureStub(nextChannel());
+    }
+
+    public UserServiceOuterClass.UserResponse getUser(int userId) {
+        return blockingStub().getUser(request(userId));
+    }
+
+    public void getUserAsync(int userId, StreamObserver<UserServiceOuterClass.UserResponse> responseObserver) {
+        asyncStub().getUser(request(userId), responseObserver);
+    }
+
+    public ListenableFuture<UserServiceOuterClass.UserResponse> getUserFuture(int userId) {
+        return futureStub().getUser(request(userId));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(5, TimeUnit.SECONDS)) {
+                channel.shutdownNow();
+            }
+        }
+        eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+    }
+
+    private ManagedChannel nextChannel() {
+        return channels[Math.floorMod(next.getAndIncrement(), channels.length)];
+    }
+
+    private static UserServiceOuterClass.UserRequest request(int userId) {
+        return UserServiceOuterClass.UserRequest.newBuilder().setUserId(userId).build();
+    }
+
+    public static void startClient() {
+
+        Thread.currentThread().setName("UserClient");
+        long start = System.currentTimeMillis();
+
+        try (UserClient client = new UserClient("localhost", 50051, 1)) {
+            UserServiceOuterClass.UserResponse response = client.getUser(12);
             System.out.println("User info: " + response.getName() + ", " + response.getEmail());
             long end = System.currentTimeMillis();
             System.out.println("grpc-lab test: the time is: " + (end - start));
-        } finally {
-            channel.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
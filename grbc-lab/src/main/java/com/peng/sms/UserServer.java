@@ -1,39 +1,329 @@
 package com.peng.sms;
 
-import io.grpc.ServerBuilder;
+import com.peng.sms.metrics.MetricsServerInterceptor;
+import com.peng.sms.metrics.RpcMetrics;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class UserServer {
 
     private static io.grpc.Server server;
+    private static UserServiceImpl service;
+    // null when the server runs without metrics
+    private static RpcMetrics metrics;
+    // owned by the running server and released by stop()
+    private static ExecutorService executor;
+    private static EventLoopGroup bossGroup;
+    private static EventLoopGroup workerGroup;
+
+    /**
+     * Runs one standalone replica until the JVM is terminated: {@code java -cp grpc-lab-all.jar com.peng.sms.UserServer [port]}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : UserServerConfig.DEFAULT_PORT;
+        start(UserServerConfig.builder().port(port).build());
+        io.grpc.Server running = server;
+        Runtime.getRuntime().addShutdownHook(new Thread(UserServer::stop, "UserServer-shutdown"));
+        running.awaitTermination();
+    }
 
     public static void start() {
+        start(UserServerConfig.defaults());
+    }
+
+    public static void start(UserServerConfig config) {
+        UserCache cache = config.cacheMaxEntries() > 0 ? new UserCache(config.cacheMaxEntries(), config.cacheTtl()) : null;
+        service = new UserServiceImpl(new UserStore(), cache);
+        NettyServerBuilder builder = NettyServerBuilder.forPort(config.port());
+        metrics = config.metricsEnabled() ? new RpcMetrics("server") : null;
+        if (metrics != null) {
+            metrics.register();
+            builder.addService(ServerInterceptors.intercept(service, new MetricsServerInterceptor(metrics)));
+        } else {
+            builder.addService(service);
+        }
+
+        switch (config.executorMode()) {
+            case DIRECT -> builder.directExecutor();
+            case FORK_JOIN -> {
+                // asyncMode: FIFO queues suit independent calls better than the default work stealing LIFO
+                executor = new ForkJoinPool(config.forkJoinParallelism(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                builder.executor(executor);
+            }
+            case VIRTUAL_THREAD -> {
+                executor = Executors.newVirtualThreadPerTaskExecutor();
+                builder.executor(executor);
+            }
+            default -> { }
+        }
+
+        if (config.bossEventLoopThreads() > 0) {
+            boolean epoll = Epoll.isAvailable();
+            bossGroup = epoll ? new EpollEventLoopGroup(config.bossEventLoopThreads()) : new NioEventLoopGroup(config.bossEventLoopThreads());
+            workerGroup = epoll ? new EpollEventLoopGroup(config.workerEventLoopThreads()) : new NioEventLoopGroup(config.workerEventLoopThreads());
+            builder.bossEventLoopGroup(bossGroup)
+                    .workerEventLoopGroup(workerGroup)
+                    .channelType(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class);
+        }
+        if (config.maxConcurrentCallsPerConnection() > 0) {
+            builder.maxConcurrentCallsPerConnection(config.maxConcurrentCallsPerConnection());
+        }
+        if (config.maxInboundMessageSize() > 0) {
+            builder.maxInboundMessageSize(config.maxInboundMessageSize());
+        }
+
         try {
-            server = ServerBuilder.forPort(50051).addService(new UserServiceImpl()).build().start();
-            System.out.println("{peng wu}: Server started on port 50051");
+            server = builder.build().start();
+            System.out.println("{peng wu}: Server started on port " + config.port() + " (" + config + ")");
         } catch (IOException e) {
+            releaseResources();
             throw new RuntimeException(e);
         }
     }
 
     static class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
+
+        // writes are buffered per call and applied to the store this many at a time
+        static final int UPDATE_BATCH_SIZE = 500;
+        // bounds the response a single BatchGetUsers call builds in memory
+        static final int MAX_BATCH_GET_SIZE = 10_000;
+
+        private final UserStore store;
+        // null when caching is disabled
+        private final UserCache cache;
+
+        UserServiceImpl() {
+            this(new UserStore(), null);
+        }
+
+        UserServiceImpl(UserStore store, UserCache cache) {
+            this.store = store;
+            this.cache = cache;
+        }
+
+        UserCache cache() {
+            return cache;
+        }
+
         public void getUser(UserServiceOuterClass.UserRequest request, StreamObserver<UserServiceOuterClass.UserResponse> responseObserver) {
+            int userId = request.getUserId();
+            responseObserver.onNext(cache != null ? cache.get(userId, this::lookupUser) : lookupUser(userId));
+            responseObserver.onCompleted();
+        }
 
-            UserServiceOuterClass.UserResponse.Builder builder = UserServiceOuterClass.UserResponse.newBuilder();
-            builder.setEmail("pengwu@gmail.com");
-            builder.setUserId(request.getUserId());
-            builder.setName("pengwu");
+        @Override
+        public void batchGetUsers(UserServiceOuterClass.BatchGetUsersRequest request, StreamObserver<UserServiceOuterClass.BatchGetUsersResponse> responseObserver) {
+            if (request.getUserIdsCount() > MAX_BATCH_GET_SIZE) {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription("at most " + MAX_BATCH_GET_SIZE + " ids per batch")
+                        .asRuntimeException());
+                return;
+            }
+            UserServiceOuterClass.BatchGetUsersResponse.Builder builder = UserServiceOuterClass.BatchGetUsersResponse.newBuilder();
+            for (int userId : request.getUserIdsList()) {
+                builder.addUsers(lookupUser(userId));
+            }
             responseObserver.onNext(builder.build());
             responseObserver.onCompleted();
         }
+
+        @Override
+        public void streamUsers(UserServiceOuterClass.StreamUsersRequest request, StreamObserver<UserServiceOuterClass.UserResponse> responseObserver) {
+            ServerCallStreamObserver<UserServiceOuterClass.UserResponse> observer =
+                    (ServerCallStreamObserver<UserServiceOuterClass.UserResponse>) responseObserver;
+            // ids are int32: stop at the end of the range instead of wrapping to negative ids
+            long end = Math.min((long) request.getStartId() + Math.max(0, request.getCount()), (long) Integer.MAX_VALUE + 1);
+
+            // a cancelled stream just stops being ready; nothing to clean up
+            observer.setOnCancelHandler(() -> { });
+            // only produce while the transport can take more, so a slow reader is never buried in buffered messages
+            observer.setOnReadyHandler(new Runnable() {
+                private long nextId = request.getStartId();
+                private boolean completed;
+
+                @Override
+                public void run() {
+                    while (observer.isReady() && nextId < end) {
+                        observer.onNext(lookupUser((int) nextId++));
+                    }
+                    if (nextId >= end && !completed) {
+                        completed = true;
+                        observer.onCompleted();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public StreamObserver<UserServiceOuterClass.UpdateUserRequest> updateUsers(StreamObserver<UserServiceOuterClass.UpdateUsersAck> responseObserver) {
+            return new BatchingUpdateObserver(responseObserver, false);
+        }
+
+        @Override
+        public StreamObserver<UserServiceOuterClass.UpdateUserRequest> updateUsersStream(StreamObserver<UserServiceOuterClass.UpdateUsersAck> responseObserver) {
+            return new BatchingUpdateObserver(responseObserver, true);
+        }
+
+        @Override
+        public void ping(UserServiceOuterClass.Empty request, StreamObserver<UserServiceOuterClass.Empty> responseObserver) {
+            responseObserver.onNext(request);
+            responseObserver.onCompleted();
+        }
+
+        // ids that were never written still get the demo profile
+        UserServiceOuterClass.UserResponse lookupUser(int userId) {
+            UserServiceOuterClass.User user = store.get(String.valueOf(userId));
+            UserServiceOuterClass.UserResponse.Builder builder = UserServiceOuterClass.UserResponse.newBuilder();
+            builder.setUserId(userId);
+            if (user != null) {
+                builder.setName(user.getName());
+                builder.setEmail(user.getEmail());
+            } else {
+                builder.setEmail("pengwu@gmail.com");
+                builder.setName("pengwu");
+            }
+            return builder.build();
+        }
+
+        // GetUser is keyed by int; string ids that are not numbers can never be cached
+        private void invalidate(List<UserServiceOuterClass.User> written) {
+            if (cache == null) {
+                return;
+            }
+            for (UserServiceOuterClass.User user : written) {
+                try {
+                    cache.invalidate(Integer.parseInt(user.getId()));
+                } catch (NumberFormatException ignored) {
+                    // not reachable through GetUser
+                }
+            }
+        }
+
+        /**
+         * Collects incoming writes and applies them to the store {@link #UPDATE_BATCH_SIZE} at a time.
+         * With {@code ackEachBatch} every applied batch is acknowledged on the response stream
+         * (bidirectional); otherwise a single ack is sent when the client half-closes.
+         */
+        private class BatchingUpdateObserver implements StreamObserver<UserServiceOuterClass.UpdateUserRequest> {
+
+            private final StreamObserver<UserServiceOuterClass.UpdateUsersAck> responseObserver;
+            private final boolean ackEachBatch;
+            private final List<UserServiceOuterClass.User> batch = new ArrayList<>(UPDATE_BATCH_SIZE);
+            private long total;
+            private String lastId = "";
+
+            BatchingUpdateObserver(StreamObserver<UserServiceOuterClass.UpdateUsersAck> responseObserver, boolean ackEachBatch) {
+                this.responseObserver = responseObserver;
+                this.ackEachBatch = ackEachBatch;
+            }
+
+            @Override
+            public void onNext(UserServiceOuterClass.UpdateUserRequest request) {
+                batch.add(UserServiceOuterClass.User.newBuilder()
+                        .setId(request.getId())
+                        .setName(request.getName())
+                        .setEmail(request.getEmail())
+                        .build());
+                if (batch.size() >= UPDATE_BATCH_SIZE) {
+                    int applied = flush();
+                    if (ackEachBatch) {
+                        responseObserver.onNext(ack(applied));
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // the client gave up; writes already flushed stay applied
+                batch.clear();
+            }
+
+            @Override
+            public void onCompleted() {
+                int applied = flush();
+                if (!ackEachBatch) {
+                    responseObserver.onNext(ack((int) total));
+                } else if (applied > 0) {
+                    responseObserver.onNext(ack(applied));
+                }
+                responseObserver.onCompleted();
+            }
+
+            private int flush() {
+                int applied = batch.size();
+                if (applied > 0) {
+                    store.putAll(batch);
+                    invalidate(batch);
+                    total += applied;
+                    lastId = batch.get(applied - 1).getId();
+                    batch.clear();
+                }
+                return applied;
+            }
+
+            private UserServiceOuterClass.UpdateUsersAck ack(int applied) {
+                return UserServiceOuterClass.UpdateUsersAck.newBuilder()
+                        .setApplied(applied)
+                        .setTotal(total)
+                        .setLastId(lastId)
+                        .build();
+            }
+        }
     }
 
     public static void stop() {
         if (server != null) {
-            server.shutdown();
+            try {
+                server.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            releaseResources();
+            server = null;
+            if (metrics != null) {
+                System.out.print(metrics.report());
+            }
+            if (service.cache() != null) {
+                System.out.println("{peng wu}: GetUser cache " + service.cache());
+            }
             System.out.println("{peng wu}: Server stopped");
         }
     }
+
+    public static RpcMetrics metrics() {
+        return metrics;
+    }
+
+    private static void releaseResources() {
+        if (metrics != null) {
+            metrics.unregister();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            bossGroup = null;
+            workerGroup = null;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+package com.peng.sms;
+
+import java.time.Duration;
+
+/**
+ * Threading and transport settings for {@link UserServer#start(UserServerConfig)}.
+ * Built with {@link #builder()}; anything not set keeps the grpc-java default.
+ */
+public class UserServerConfig {
+
+    /**
+     * Where service methods run once a call has been decoded by a worker event loop.
+     */
+    public enum ExecutorMode {
+        // grpc-java's unbounded cached thread pool
+        DEFAULT,
+        // on the Netty worker event loop itself; only safe while handlers never block
+        DIRECT,
+        // FIFO fork-join pool sized to the available processors
+        FORK_JOIN,
+        // one virtual thread per call
+        VIRTUAL_THREAD
+    }
+
+    public static final int DEFAULT_PORT = 50051;
+
+    private final int port;
+    private final ExecutorMode executorMode;
+    private final int forkJoinParallelism;
+    private final int bossEventLoopThreads;
+    private final int workerEventLoopThreads;
+    private final int maxConcurrentCallsPerConnection;
+    private final int maxInboundMessageSize;
+    private final int cacheMaxEntries;
+    private final Duration cacheTtl;
+    private final boolean metricsEnabled;
+
+    private UserServerConfig(Builder builder) {
+        this.port = builder.port;
+        this.executorMode = builder.executorMode;
+        this.forkJoinParallelism = builder.forkJoinParallelism;
+        this.bossEventLoopThreads = builder.bossEventLoopThreads;
+        this.workerEventLoopThreads = builder.workerEventLoopThreads;
+        this.maxConcurrentCallsPerConnection = builder.maxConcurrentCallsPerConnection;
+        this.maxInboundMessageSize = builder.maxInboundMessageSize;
+        this.cacheMaxEntries = builder.cacheMaxEntries;
+        this.cacheTtl = builder.cacheTtl;
+        this.metricsEnabled = builder.metricsEnabled;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static UserServerConfig defaults() {
+        return builder().build();
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public ExecutorMode executorMode() {
+        return executorMode;
+    }
+
+    public int forkJoinParallelism() {
+        return forkJoinParallelism;
+    }
+
+    // 0 keeps the default: one boss thread and shared worker threads sized by Netty
+    public int bossEventLoopThreads() {
+        return bossEventLoopThreads;
+    }
+
+    public int workerEventLoopThreads() {
+        return workerEventLoopThreads;
+    }
+
+    // 0 means unlimited
+    public int maxConcurrentCallsPerConnection() {
+        return maxConcurrentCallsPerConnection;
+    }
+
+    // 0 keeps grpc-java's 4MB limit
+    public int maxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    // 0 disables the GetUser cache
+    public int cacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public Duration cacheTtl() {
+        return cacheTtl;
+    }
+
+    // per-method call metrics published over JMX, see com.peng.sms.metrics.RpcMetrics
+    public boolean metricsEnabled() {
+        return metricsEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "executor=" + executorMode
+                + ", bossThreads=" + bossEventLoopThreads
+                + ", workerThreads=" + workerEventLoopThreads
+                + ", maxConcurrentCallsPerConnection=" + maxConcurrentCallsPerConnection
+                + ", maxInboundMessageSize=" + maxInboundMessageSize
+                + ", cacheMaxEntries=" + cacheMaxEntries
+                + ", cacheTtl=" + cacheTtl
+                + ", metrics=" + metricsEnabled;
+    }
+
+    public static class Builder {
+        private int port = DEFAULT_PORT;
+        private ExecutorMode executorMode = ExecutorMode.DEFAULT;
+        private int forkJoinParallelism = Runtime.getRuntime().availableProcessors();
+        private int bossEventLoopThreads;
+        private int workerEventLoopThreads;
+        private int maxConcurrentCallsPerConnection;
+        private int maxInboundMessageSize;
+        private int cacheMaxEntries = 10_000;
+        private Duration cacheTtl = Duration.ofSeconds(30);
+        private boolean metricsEnabled = true;
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder executor(ExecutorMode executorMode) {
+            this.executorMode = executorMode;
+            return this;
+        }
+
+        public Builder forkJoinParallelism(int forkJoinParallelism) {
+            this.forkJoinParallelism = forkJoinParallelism;
+            return this;
+        }
+
+        public Builder eventLoops(int bossThreads, int workerThreads) {
+            this.bossEventLoopThreads = bossThreads;
+            this.workerEventLoopThreads = workerThreads;
+            return this;
+        }
+
+        public Builder maxConcurrentCallsPerConnection(int maxConcurrentCallsPerConnection) {
+            this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+            return this;
+        }
+
+        public Builder maxInboundMessageSize(int maxInboundMessageSize) {
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        public Builder cache(int maxEntries, Duration ttl) {
+            this.cacheMaxEntries = maxEntries;
+            this.cacheTtl = ttl;
+            return this;
+        }
+
+        public Builder metrics(boolean enabled) {
+            this.metricsEnabled = enabled;
+            return this;
+        }
+
+        public UserServerConfig build() {
+            if (bossEventLoopThreads > 0 != workerEventLoopThreads > 0) {
+                throw new IllegalArgumentException("boss and worker event loop counts must be set together");
+            }
+            return new UserServerConfig(this);
+        }
+    }
+}
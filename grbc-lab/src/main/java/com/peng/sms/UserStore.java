@@ -0,0 +1,35 @@
+package com.peng.sms;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory user store shared by every call of {@link UserServer.UserServiceImpl}.
+ * Keyed by the string id of {@code UpdateUserRequest}/{@code User}; safe for concurrent readers and writers.
+ */
+public class UserStore {
+
+    private final ConcurrentMap<String, UserServiceOuterClass.User> users = new ConcurrentHashMap<>();
+
+    public UserServiceOuterClass.User get(String id) {
+        return users.get(id);
+    }
+
+    public void put(UserServiceOuterClass.User user) {
+        users.put(user.getId(), user);
+    }
+
+    /**
+     * Applies a whole batch of writes; last write per id wins.
+     */
+    public void putAll(Collection<UserServiceOuterClass.User> batch) {
+        for (UserServiceOuterClass.User user : batch) {
+            users.put(user.getId(), user);
+        }
+    }
+
+    public int size() {
+        return users.size();
+    }
+}
@@ -0,0 +1,297 @@
+package com.peng.sms.lb;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.peng.sms.UserClient;
+import com.peng.sms.UserServiceGrpc;
+import com.peng.sms.UserServiceOuterClass;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side load balancing over several {@code UserServer} replicas. Keeps one channel per replica
+ * from an {@link EndpointResolver} and picks a replica per call with a {@link BalancingPolicy}.
+ * A background task re-resolves the replicas and {@code Ping}s each one; replicas that fail the probe,
+ * or a call with {@code UNAVAILABLE}, are skipped until a probe succeeds again.
+ */
+public class BalancedUserClient implements AutoCloseable {
+
+    private static final long PROBE_DEADLINE_MILLIS = 1000;
+
+    private final EndpointResolver resolver;
+    private final BalancingPolicy policy;
+    private final ClientInterceptor[] interceptors;
+    private final EventLoopGroup eventLoopGroup = UserClient.newEventLoopGroup();
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BalancedUserClient-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder failedHealthChecks = new LongAdder();
+    private volatile RuntimeException lastHealthCheckFailure;
+    // replaced as a whole when the resolver's answer changes
+    private volatile List<Backend> backends = List.of();
+
+    public BalancedUserClient(EndpointResolver resolver, BalancingPolicy policy) {
+        this(resolver, policy, Duration.ofSeconds(2));
+    }
+
+    public BalancedUserClient(EndpointResolver resolver, BalancingPolicy policy, Duration healthCheckInterval, ClientInterceptor... interceptors) {
+        this.resolver = resolver;
+        this.policy = policy;
+        this.interceptors = interceptors;
+        refresh();
+        long interval = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkHealthQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public UserServiceOuterClass.UserResponse getUser(int userId) {
+        Backend backend = pick();
+        backend.outstanding.incrementAndGet();
+        try {
+            UserServiceOuterClass.UserResponse response = backend.blockingStub.getUser(request(userId));
+            backend.calls.increment();
+            return response;
+        } catch (StatusRuntimeException e) {
+            backend.failed(e.getStatus());
+            throw e;
+        } finally {
+            backend.outstanding.decrementAndGet();
+        }
+    }
+
+    public ListenableFuture<UserServiceOuterClass.UserResponse> getUserFuture(int userId) {
+        Backend backend = pick();
+        backend.outstanding.incrementAndGet();
+        ListenableFuture<UserServiceOuterClass.UserResponse> response = backend.futureStub.getUser(request(userId));
+        response.addListener(() -> {
+            backend.outstanding.decrementAndGet();
+            try {
+                response.get();
+                backend.calls.increment();
+            } catch (ExecutionException e) {
+                backend.failed(Status.fromThrowable(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, MoreExecutors.directExecutor());
+        return response;
+    }
+
+    public List<Backend> backends() {
+        return backends;
+    }
+
+    /**
+     * Re-resolves the replicas and probes every one of them; runs on the health-check thread
+     * and can be called directly to react to a change right away. The probes run in parallel,
+     * each with its own deadline, so a slow replica delays no other replica's result.
+     */
+    public void checkHealth() {
+        refresh();
+        List<Backend> probed = backends;
+        List<ListenableFuture<UserServiceOuterClass.Empty>> probes = new ArrayList<>(probed.size());
+        for (Backend backend : probed) {
+            probes.add(backend.futureStub
+                    .withDeadlineAfter(PROBE_DEADLINE_MILLIS, TimeUnit.MILLISECONDS)
+                    .ping(UserServiceOuterClass.Empty.getDefaultInstance()));
+        }
+        for (int i = 0; i < probed.size(); i++) {
+            Backend backend = probed.get(i);
+            ListenableFuture<UserServiceOuterClass.Empty> probe = probes.get(i);
+            // - Each replica's health is updated as soon as its own probe ends
+            probe.addListener(() -> backend.markHealthy(succeeded(probe)), MoreExecutors.directExecutor());
+        }
+        // returns once every probe has ended, which the deadlines bound to about PROBE_DEADLINE_MILLIS
+        try {
+            Futures.successfulAsList(probes).get();
+        } catch (ExecutionException e) {
+            // failures are already recorded per replica
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // health-check rounds that threw, e.g. from the resolver; the next round runs regardless
+    public long failedHealthChecks() {
+        return failedHealthChecks.sum();
+    }
+
+    // null until a round fails
+    public RuntimeException lastHealthCheckFailure() {
+        return lastHealthCheckFailure;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        healthChecker.shutdownNow();
+        for (Backend backend : backends) {
+            backend.channel.shutdown();
+        }
+        for (Backend backend : backends) {
+            if (!backend.channel.awaitTermination(5, TimeUnit.SECONDS)) {
+                backend.channel.shutdownNow();
+            }
+        }
+        eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+    }
+
+    private Backend pick() {
+        List<Backend> all = backends;
+        if (all.isEmpty()) {
+            throw Status.UNAVAILABLE.withDescription("no UserServer endpoints resolved").asRuntimeException();
+        }
+        List<Backend> candidates = new ArrayList<>(all.size());
+        for (Backend backend : all) {
+            if (backend.healthy) {
+                candidates.add(backend);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // with every replica marked down, try them anyway rather than failing every call until the next probe
+            candidates = all;
+        }
+        // - Rotate over the healthy replicas only, so a skipped replica's share is spread evenly
+        //   instead of all going to its neighbour
+        int start = Math.floorMod(next.getAndIncrement(), candidates.size());
+        if (policy == BalancingPolicy.ROUND_ROBIN) {
+            return candidates.get(start);
+        }
+        Backend chosen = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Backend candidate = candidates.get((start + i) % candidates.size());
+            // scanning from a rotating start spreads ties instead of piling them on the first replica
+            if (chosen == null || candidate.outstanding.get() < chosen.outstanding.get()) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    private static boolean succeeded(ListenableFuture<?> probe) {
+        try {
+            Futures.getDone(probe);
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    // an exception escaping a scheduled run would cancel every later health check
+    private void checkHealthQuietly() {
+        try {
+            checkHealth();
+        } catch (RuntimeException e) {
+            lastHealthCheckFailure = e;
+            failedHealthChecks.increment();
+        }
+    }
+
+    private synchronized void refresh() {
+        // a replica listed twice gets one backend, not one channel per occurrence
+        Set<InetSocketAddress> resolved = new LinkedHashSet<>(resolver.resolve());
+        Map<InetSocketAddress, Backend> current = new LinkedHashMap<>();
+        for (Backend backend : backends) {
+            current.put(backend.address, backend);
+        }
+        List<Backend> updated = new ArrayList<>(resolved.size());
+        List<Backend> created = new ArrayList<>();
+        for (InetSocketAddress address : resolved) {
+            Backend backend = current.remove(address);
+            if (backend == null) {
+                backend = new Backend(address, UserClient.newChannel(address.getHostString(), address.getPort(), eventLoopGroup, interceptors));
+                created.add(backend);
+            }
+            updated.add(backend);
+        }
+        if (updated.size() == backends.size() && current.isEmpty()) {
+            // nothing changed: close whatever was built on the way rather than leak it
+            for (Backend unused : created) {
+                unused.channel.shutdown();
+            }
+            return;
+        }
+        backends = List.copyOf(updated);
+        // replicas no longer listed finish their in-flight calls, then close
+        for (Backend removed : current.values()) {
+            removed.channel.shutdown();
+        }
+    }
+
+    private static UserServiceOuterClass.UserRequest request(int userId) {
+        return UserServiceOuterClass.UserRequest.newBuilder().setUserId(userId).build();
+    }
+
+    /**
+     * One replica: its channel, health and the calls this client has in flight to it.
+     */
+    public static final class Backend {
+        private final InetSocketAddress address;
+        private final ManagedChannel channel;
+        private final UserServiceGrpc.UserServiceBlockingStub blockingStub;
+        private final UserServiceGrpc.UserServiceFutureStub futureStub;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder calls = new LongAdder();
+        // optimistic until the first probe says otherwise
+        private volatile boolean healthy = true;
+
+        Backend(InetSocketAddress address, ManagedChannel channel) {
+            this.address = address;
+            this.channel = channel;
+            this.blockingStub = UserServiceGrpc.newBlockingStub(channel);
+            this.futureStub = UserServiceGrpc.newFutureStub(channel);
+        }
+
+        public InetSocketAddress address() {
+            return address;
+        }
+
+        public String target() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+
+        public boolean healthy() {
+            return healthy;
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        // successful calls routed here
+        public long calls() {
+            return calls.sum();
+        }
+
+        void failed(Status status) {
+            if (status.getCode() == Status.Code.UNAVAILABLE) {
+                markHealthy(false);
+            }
+        }
+
+        void markHealthy(boolean nowHealthy) {
+            healthy = nowHealthy;
+        }
+    }
+}
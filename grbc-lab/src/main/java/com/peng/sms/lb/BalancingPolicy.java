@@ -0,0 +1,11 @@
+package com.peng.sms.lb;
+
+/**
+ * How {@link BalancedUserClient} picks a healthy replica for each call.
+ */
+public enum BalancingPolicy {
+    // each replica in turn
+    ROUND_ROBIN,
+    // the replica with the fewest calls this client still has in flight; steers away from slow replicas
+    LEAST_OUTSTANDING
+}
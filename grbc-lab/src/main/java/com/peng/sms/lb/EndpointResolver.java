@@ -0,0 +1,31 @@
+package com.peng.sms.lb;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Source of the {@code UserServer} replicas a {@link BalancedUserClient} spreads calls over.
+ * Resolved again on every health-check round, so the list may change while the client runs.
+ */
+public interface EndpointResolver {
+
+    List<InetSocketAddress> resolve();
+
+    /**
+     * Parses {@code host:port[,host:port...]}.
+     */
+    static List<InetSocketAddress> parse(String targets) {
+        return Arrays.stream(targets.split("[,\\s]+"))
+                .map(String::trim)
+                .filter(target -> !target.isEmpty())
+                .map(target -> {
+                    int colon = target.lastIndexOf(':');
+                    if (colon < 0) {
+                        throw new IllegalArgumentException("expected host:port but got " + target);
+                    }
+                    return InetSocketAddress.createUnresolved(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+                })
+                .toList();
+    }
+}
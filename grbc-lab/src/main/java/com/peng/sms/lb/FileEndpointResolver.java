@@ -0,0 +1,59 @@
+package com.peng.sms.lb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+/**
+ * Replicas listed one {@code host:port} per line in a file ({@code #} starts a comment line).
+ * The file is re-read only when its modification time changes; a file that becomes unreadable
+ * keeps the last good list so a half-written update does not empty the pool.
+ */
+public class FileEndpointResolver implements EndpointResolver {
+
+    private final Path file;
+    private FileTime lastModified;
+    private List<InetSocketAddress> endpoints = List.of();
+    private volatile Exception lastReloadFailure;
+
+    public FileEndpointResolver(Path file) {
+        this.file = file;
+        try {
+            reload();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read endpoints from " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized List<InetSocketAddress> resolve() {
+        try {
+            if (!Files.getLastModifiedTime(file).equals(lastModified)) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            lastReloadFailure = e;
+        }
+        return endpoints;
+    }
+
+    /**
+     * Why the file could not be re-read the last time it changed, or null if it was read fine;
+     * the previous endpoints stay in use until it can.
+     */
+    public Exception lastReloadFailure() {
+        return lastReloadFailure;
+    }
+
+    private synchronized void reload() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        endpoints = EndpointResolver.parse(String.join("\n",
+                Files.readAllLines(file).stream().filter(line -> !line.trim().startsWith("#")).toList()));
+        lastModified = modified;
+        lastReloadFailure = null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.peng.sms.lb;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * A fixed list of replicas, e.g. {@code new StaticEndpointResolver("localhost:50051,localhost:50052")}.
+ */
+public class StaticEndpointResolver implements EndpointResolver {
+
+    private final List<InetSocketAddress> endpoints;
+
+    public StaticEndpointResolver(String targets) {
+        this(EndpointResolver.parse(targets));
+    }
+
+    public StaticEndpointResolver(List<InetSocketAddress> endpoints) {
+        this.endpoints = List.copyOf(endpoints);
+    }
+
+    @Override
+    public List<InetSocketAddress> resolve() {
+        return endpoints;
+    }
+}
@@ -0,0 +1,23 @@
+package com.peng.sms.metrics;
+
+/**
+ * Times one call for {@link MethodMetrics}, on either side of the channel. Ends a call exactly once:
+ * a cancelled server call may or may not have been closed first.
+ */
+final class CallTimer {
+    private final MethodMetrics method;
+    private final long start = System.nanoTime();
+    private boolean finished;
+
+    CallTimer(MethodMetrics method) {
+        this.method = method;
+        method.callStarted();
+    }
+
+    synchronized void finish(boolean ok) {
+        if (!finished) {
+            finished = true;
+            method.callFinished(System.nanoTime() - start, ok);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.peng.sms.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one gRPC method. Every recording method is lock-free and
+ * safe to call from any transport or executor thread.
+ */
+public class MethodMetrics implements MethodMetricsMXBean {
+
+    // latencies above this are clamped rather than resizing the histogram on the hot path
+    private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String method;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final Histogram latency = new ConcurrentHistogram(MAX_TRACKED_NANOS, 2);
+
+    MethodMetrics(String method) {
+        this.method = method;
+    }
+
+    public void callStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void callFinished(long elapsedNanos, boolean ok) {
+        inFlight.decrementAndGet();
+        calls.increment();
+        if (!ok) {
+            errors.increment();
+        }
+        latency.recordValue(Math.min(Math.max(elapsedNanos, 0), MAX_TRACKED_NANOS));
+    }
+
+    public void messageReceived(int bytes) {
+        messagesReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    public void messageSent(int bytes) {
+        messagesSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50LatencyMicros() {
+        return latency.getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99LatencyMicros() {
+        return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999LatencyMicros() {
+        return latency.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxLatencyMicros() {
+        return latency.getMaxValue() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s calls=%d errors=%d inFlight=%d in=%dB out=%dB p50=%.1fus p99=%.1fus p99.9=%.1fus",
+                method, getCalls(), getErrors(), getInFlight(), getBytesReceived(), getBytesSent(),
+                getP50LatencyMicros(), getP99LatencyMicros(), getP999LatencyMicros());
+    }
+}
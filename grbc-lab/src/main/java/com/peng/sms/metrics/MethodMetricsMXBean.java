@@ -0,0 +1,34 @@
+package com.peng.sms.metrics;
+
+/**
+ * JMX view of one gRPC method, registered by {@link RpcMetrics#register()}.
+ * Counters and latency percentiles are cumulative since registration.
+ */
+public interface MethodMetricsMXBean {
+
+    String getMethod();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getInFlight();
+
+    long getMessagesReceived();
+
+    long getMessagesSent();
+
+    long getBytesReceived();
+
+    long getBytesSent();
+
+    double getMeanLatencyMicros();
+
+    double getP50LatencyMicros();
+
+    double getP99LatencyMicros();
+
+    double getP999LatencyMicros();
+
+    double getMaxLatencyMicros();
+}
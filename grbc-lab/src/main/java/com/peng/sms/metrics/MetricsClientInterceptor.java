@@ -0,0 +1,56 @@
+package com.peng.sms.metrics;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import static com.peng.sms.metrics.MetricsServerInterceptor.serializedSize;
+
+/**
+ * Records client-side call counts, in-flight calls, message sizes and latency into {@link RpcMetrics}.
+ * Latency runs from {@code start()} to {@code onClose()}, so it includes the network and server time.
+ */
+public class MetricsClientInterceptor implements ClientInterceptor {
+
+    private final RpcMetrics metrics;
+
+    public MetricsClientInterceptor(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> descriptor, CallOptions callOptions, Channel next) {
+        MethodMetrics method = metrics.method(descriptor.getFullMethodName());
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(descriptor, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                CallTimer timer = new CallTimer(method);
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        method.messageReceived(serializedSize(message));
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        timer.finish(status.isOk());
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                method.messageSent(serializedSize(message));
+                super.sendMessage(message);
+            }
+        };
+    }
+}
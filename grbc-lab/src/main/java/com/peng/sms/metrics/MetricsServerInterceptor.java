@@ -0,0 +1,63 @@
+package com.peng.sms.metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Records server-side call counts, in-flight calls, message sizes and latency into {@link RpcMetrics}.
+ * Latency runs from the call reaching the interceptor to the server closing it, or to cancellation.
+ * A call is counted before its close is passed on, so a client never sees a call end that is not yet counted.
+ */
+public class MetricsServerInterceptor implements ServerInterceptor {
+
+    private final RpcMetrics metrics;
+
+    public MetricsServerInterceptor(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        MethodMetrics method = metrics.method(call.getMethodDescriptor().getFullMethodName());
+        CallTimer timer = new CallTimer(method);
+
+        ServerCall<ReqT, RespT> recordingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                method.messageSent(serializedSize(message));
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                // recorded first: once closed, the client may already see the call as done
+                timer.finish(status.isOk());
+                super.close(status, trailers);
+            }
+        };
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(recordingCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                method.messageReceived(serializedSize(message));
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                timer.finish(false);
+                super.onCancel();
+            }
+        };
+    }
+
+    // protobuf memoizes the size, so this is free once the message has been serialized
+    static int serializedSize(Object message) {
+        return message instanceof MessageLite lite ? lite.getSerializedSize() : 0;
+    }
+}
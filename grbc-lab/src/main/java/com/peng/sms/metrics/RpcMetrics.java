@@ -0,0 +1,90 @@
+package com.peng.sms.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-method metrics for one side of a gRPC connection, filled by {@link MetricsServerInterceptor}
+ * or {@link MetricsClientInterceptor}. {@link #register()} publishes every method as an MXBean
+ * named {@code com.peng.sms:type=RpcMetrics,side=<side>,method=<full method name>}, readable from
+ * jconsole / VisualVM or any JMX client.
+ */
+public class RpcMetrics {
+
+    private final String side;
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile boolean publish;
+
+    public RpcMetrics(String side) {
+        this.side = side;
+    }
+
+    public MethodMetrics method(String fullMethodName) {
+        MethodMetrics metrics = methods.get(fullMethodName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return methods.computeIfAbsent(fullMethodName, name -> {
+            MethodMetrics created = new MethodMetrics(name);
+            if (publish) {
+                registerMBean(created);
+            }
+            return created;
+        });
+    }
+
+    public Collection<MethodMetrics> methods() {
+        return methods.values();
+    }
+
+    /**
+     * Publishes current and future methods on the platform MBean server until {@link #unregister()}.
+     */
+    public synchronized void register() {
+        publish = true;
+        methods.values().forEach(this::registerMBean);
+    }
+
+    public synchronized void unregister() {
+        publish = false;
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                mBeanServer.unregisterMBean(name);
+            } catch (JMException ignored) {
+                // already gone
+            }
+        }
+        registered.clear();
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (MethodMetrics metrics : methods.values()) {
+            report.append(side).append(' ').append(metrics).append('\n');
+        }
+        return report.toString();
+    }
+
+    private synchronized void registerMBean(MethodMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName("com.peng.sms:type=RpcMetrics,side=" + side
+                    + ",method=" + ObjectName.quote(metrics.getMethod()));
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(metrics, name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register metrics for " + metrics.getMethod(), e);
+        }
+    }
+}
@@ -2,10 +2,43 @@ package com.peng.sms;
 
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import junit.framework.TestCase;
 import org.junit.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.peng.sms.lb.BalancedUserClient;
+import com.peng.sms.lb.EndpointResolver;
+import com.peng.sms.lb.BalancingPolicy;
+import com.peng.sms.lb.FileEndpointResolver;
+import com.peng.sms.lb.StaticEndpointResolver;
+import com.peng.sms.metrics.MethodMetrics;
+import com.peng.sms.metrics.MetricsClientInterceptor;
+import com.peng.sms.metrics.RpcMetrics;
+import io.grpc.stub.StreamObserver;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertThrows;
+
 
 @SpringBootTest
 public class UserServerTest extends TestCase {
@@ -38,6 +71,545 @@ public class UserServerTest extends TestCase {
         server.shutdownNow();
     }
 
+    @Test
+    public void testBatchGetUsers() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50051)
+                .addService(new UserServer.UserServiceImpl())
+                .build()
+                .start();
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .build();
+
+        UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
+
+        UserServiceOuterClass.BatchGetUsersResponse response = stub.batchGetUsers(
+                UserServiceOuterClass.BatchGetUsersRequest.newBuilder()
+                        .addUserIds(1).addUserIds(2).addUserIds(3)
+                        .build());
+
+        assertEquals(3, response.getUsersCount());
+        assertEquals(2, response.getUsers(1).getUserId());
+
+        // over the limit the whole call is refused
+        UserServiceOuterClass.BatchGetUsersRequest.Builder tooMany = UserServiceOuterClass.BatchGetUsersRequest.newBuilder();
+        for (int i = 0; i <= UserServer.UserServiceImpl.MAX_BATCH_GET_SIZE; i++) {
+            tooMany.addUserIds(i);
+        }
+        StatusRuntimeException refused = assertThrows(StatusRuntimeException.class,
+                () -> stub.batchGetUsers(tooMany.build()));
+        assertEquals(Status.Code.INVALID_ARGUMENT, refused.getStatus().getCode());
+
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testStreamUsers() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50051)
+                .addService(new UserServer.UserServiceImpl())
+                .build()
+                .start();
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .build();
+
+        UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
+
+        // far more messages than one flow-control window holds
+        Iterator<UserServiceOuterClass.UserResponse> users = stub.streamUsers(
+                UserServiceOuterClass.StreamUsersRequest.newBuilder().setStartId(100).setCount(50_000).build());
+
+        int expectedId = 100;
+        while (users.hasNext()) {
+            assertEquals(expectedId++, users.next().getUserId());
+        }
+        assertEquals(50_100, expectedId);
+
+        // the stream ends at the last int id rather than wrapping around
+        Iterator<UserServiceOuterClass.UserResponse> tail = stub.streamUsers(
+                UserServiceOuterClass.StreamUsersRequest.newBuilder().setStartId(Integer.MAX_VALUE - 2).setCount(10).build());
+        List<Integer> tailIds = new ArrayList<>();
+        tail.forEachRemaining(user -> tailIds.add(user.getUserId()));
+        assertEquals(List.of(Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1, Integer.MAX_VALUE), tailIds);
+
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testUpdateUsersClientStreaming() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50051)
+                .addService(new UserServer.UserServiceImpl())
+                .build()
+                .start();
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .build();
+
+        List<UserServiceOuterClass.UpdateUsersAck> acks = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamObserver<UserServiceOuterClass.UpdateUserRequest> updates =
+                UserServiceGrpc.newStub(channel).updateUsers(collect(acks, done));
+        for (int i = 0; i < 1200; i++) {
+            updates.onNext(update(i));
+        }
+        updates.onCompleted();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, acks.size());
+        assertEquals(1200, acks.get(0).getApplied());
+        assertEquals("1199", acks.get(0).getLastId());
+
+        // updated users are served by GetUser, untouched ids keep the default profile
+        UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
+        assertEquals("user-7", stub.getUser(UserServiceOuterClass.UserRequest.newBuilder().setUserId(7).build()).getName());
+        assertEquals("pengwu", stub.getUser(UserServiceOuterClass.UserRequest.newBuilder().setUserId(5000).build()).getName());
+
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testUpdateUsersStreamAcksEachBatch() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50051)
+                .addService(new UserServer.UserServiceImpl())
+                .build()
+                .start();
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .build();
+
+        List<UserServiceOuterClass.UpdateUsersAck> acks = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamObserver<UserServiceOuterClass.UpdateUserRequest> updates =
+                UserServiceGrpc.newStub(channel).updateUsersStream(collect(acks, done));
+        for (int i = 0; i < 1200; i++) {
+            updates.onNext(update(i));
+        }
+        updates.onCompleted();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // two full batches, then the remainder on half-close
+        assertEquals(3, acks.size());
+        assertEquals(500, acks.get(0).getApplied());
+        assertEquals(500, acks.get(1).getApplied());
+        assertEquals(200, acks.get(2).getApplied());
+        assertEquals(1200, acks.get(2).getTotal());
+        assertEquals("1199", acks.get(2).getLastId());
+
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testUserClientManyInFlightCalls() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50051)
+                .addService(new UserServer.UserServiceImpl())
+                .build()
+                .start();
+
+        try (UserClient client = new UserClient("localhost", 50051, 2)) {
+            // every call is issued before any reply is awaited
+            List<ListenableFuture<UserServiceOuterClass.UserResponse>> replies = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                replies.add(client.getUserFuture(i));
+            }
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(i, replies.get(i).get(10, TimeUnit.SECONDS).getUserId());
+            }
+            assertEquals("pengwu", client.getUser(1).getName());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testServerConfigExecutorModes() throws Exception {
+        for (UserServerConfig.ExecutorMode mode : UserServerConfig.ExecutorMode.values()) {
+            UserServer.start(UserServerConfig.builder()
+                    .executor(mode)
+                    .eventLoops(1, 2)
+                    .maxConcurrentCallsPerConnection(100)
+                    .maxInboundMessageSize(1024 * 1024)
+                    .build());
+            try (UserClient client = new UserClient("localhost", UserServerConfig.DEFAULT_PORT, 1)) {
+                List<ListenableFuture<UserServiceOuterClass.UserResponse>> replies = new ArrayList<>();
+                // more in-flight calls than the per-connection limit; the rest wait for a free stream
+                for (int i = 0; i < 500; i++) {
+                    replies.add(client.getUserFuture(i));
+                }
+                for (int i = 0; i < 500; i++) {
+                    assertEquals(mode.name(), i, replies.get(i).get(10, TimeUnit.SECONDS).getUserId());
+                }
+            } finally {
+                UserServer.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testUserCacheCoalescesConcurrentMisses() throws Exception {
+        UserCache cache = new UserCache(100, Duration.ofMinutes(1));
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<UserServiceOuterClass.UserResponse>> replies = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                replies.add(callers.submit(() -> cache.get(7, id -> {
+                    lookups.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return UserServiceOuterClass.UserResponse.newBuilder().setUserId(id).build();
+                })));
+            }
+            // give every caller time to join the in-flight lookup before it completes
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<UserServiceOuterClass.UserResponse> reply : replies) {
+                assertEquals(7, reply.get(5, TimeUnit.SECONDS).getUserId());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.misses());
+        assertEquals(15, cache.coalesced());
+        cache.get(7, id -> { throw new AssertionError("served from cache"); });
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testUserCacheEviction() throws Exception {
+        UserCache cache = new UserCache(2, Duration.ofMillis(100));
+        AtomicInteger lookups = new AtomicInteger();
+        IntFunction<UserServiceOuterClass.UserResponse> loader = id -> {
+            lookups.incrementAndGet();
+            return UserServiceOuterClass.UserResponse.newBuilder().setUserId(id).build();
+        };
+
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+        // 2 is least recently used and makes room for 3
+        cache.get(3, loader);
+        assertEquals(2, cache.size());
+        cache.get(1, loader);
+        assertEquals(3, lookups.get());
+        cache.get(2, loader);
+        assertEquals(4, lookups.get());
+
+        Thread.sleep(150);
+        cache.get(2, loader);
+        assertEquals(5, lookups.get());
+    }
+
+    @Test
+    public void testUserCacheInvalidationDetachesInFlightLookup() throws Exception {
+        UserCache cache = new UserCache(100, Duration.ofMinutes(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // a lookup of 7 starts before the write and returns the old profile
+            Future<UserServiceOuterClass.UserResponse> before = callers.submit(() -> cache.get(7, id -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return UserServiceOuterClass.UserResponse.newBuilder().setUserId(id).setName("old").build();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // writes to other ids leave it alone; a write to 7 detaches it
+            cache.invalidate(8);
+            cache.invalidate(7);
+            UserServiceOuterClass.UserResponse after = cache.get(7, id ->
+                    UserServiceOuterClass.UserResponse.newBuilder().setUserId(id).setName("new").build());
+            assertEquals("new", after.getName());
+
+            release.countDown();
+            assertEquals("old", before.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // the detached lookup did not overwrite the fresh entry
+        assertEquals("new", cache.get(7, id -> { throw new AssertionError("served from cache"); }).getName());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testUserCacheUnrelatedInvalidationKeepsCaching() throws Exception {
+        UserCache cache = new UserCache(100, Duration.ofMinutes(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserServiceOuterClass.UserResponse> load = callers.submit(() -> cache.get(7, id -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return UserServiceOuterClass.UserResponse.newBuilder().setUserId(id).build();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            cache.invalidate(8);
+            release.countDown();
+            load.get(5, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        cache.get(7, id -> { throw new AssertionError("served from cache"); });
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testUserCacheSegmentsKeepTheBound() {
+        UserCache cache = new UserCache(1000, Duration.ofMinutes(1));
+        for (int id = 0; id < 5000; id++) {
+            cache.get(id, userId -> UserServiceOuterClass.UserResponse.newBuilder().setUserId(userId).build());
+        }
+        assertEquals(1000, cache.size());
+    }
+
+    @Test
+    public void testCachedGetUserSeesUpdates() throws Exception {
+        UserServer.start();
+        try (UserClient client = new UserClient("localhost", UserServerConfig.DEFAULT_PORT, 1)) {
+            assertEquals("pengwu", client.getUser(42).getName());
+            assertEquals("pengwu", client.getUser(42).getName());
+
+            CountDownLatch done = new CountDownLatch(1);
+            StreamObserver<UserServiceOuterClass.UpdateUserRequest> updates =
+                    client.asyncStub().updateUsers(collect(new ArrayList<>(), done));
+            updates.onNext(update(42));
+            updates.onCompleted();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // the write invalidated the cached response
+            assertEquals("user-42", client.getUser(42).getName());
+        } finally {
+            UserServer.stop();
+        }
+    }
+
+    @Test
+    public void testRpcMetricsOnServerAndClient() throws Exception {
+        UserServer.start();
+        RpcMetrics clientMetrics = new RpcMetrics("client");
+        try (UserClient client = new UserClient("localhost", UserServerConfig.DEFAULT_PORT, 1, new MetricsClientInterceptor(clientMetrics))) {
+            for (int i = 0; i < 100; i++) {
+                client.getUser(i);
+            }
+
+            String getUser = UserServiceGrpc.getGetUserMethod().getFullMethodName();
+            MethodMetrics server = UserServer.metrics().method(getUser);
+            MethodMetrics caller = clientMetrics.method(getUser);
+            assertEquals(100, server.getCalls());
+            assertEquals(0, server.getInFlight());
+            assertEquals(100, server.getMessagesSent());
+            assertTrue(server.getBytesSent() > 0);
+            assertTrue(server.getP99LatencyMicros() > 0);
+            assertEquals(100, caller.getCalls());
+            assertEquals(server.getBytesSent(), caller.getBytesReceived());
+            // the client also pays for the network round trip
+            assertTrue(caller.getMeanLatencyMicros() >= server.getMeanLatencyMicros());
+
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.peng.sms:type=RpcMetrics,side=server,method=" + ObjectName.quote(getUser));
+            assertEquals(100L, mBeanServer.getAttribute(name, "Calls"));
+        } finally {
+            UserServer.stop();
+        }
+    }
+
+    @Test
+    public void testBalancedClientSkipsDownReplica() throws Exception {
+        io.grpc.Server first = io.grpc.ServerBuilder.forPort(50061).addService(new UserServer.UserServiceImpl()).build().start();
+        io.grpc.Server second = io.grpc.ServerBuilder.forPort(50062).addService(new UserServer.UserServiceImpl()).build().start();
+
+        try (BalancedUserClient client = new BalancedUserClient(
+                new StaticEndpointResolver("localhost:50061,localhost:50062"), BalancingPolicy.ROUND_ROBIN, Duration.ofMinutes(1))) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, client.getUser(i).getUserId());
+            }
+            assertEquals(50, client.backends().get(0).calls());
+            assertEquals(50, client.backends().get(1).calls());
+
+            second.shutdownNow().awaitTermination();
+            client.checkHealth();
+            assertFalse(client.backends().get(1).healthy());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, client.getUser(i).getUserId());
+            }
+            assertEquals(150, client.backends().get(0).calls());
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRoundRobinSpreadsDownReplicaShareEvenly() throws Exception {
+        io.grpc.Server first = io.grpc.ServerBuilder.forPort(50061).addService(new UserServer.UserServiceImpl()).build().start();
+        io.grpc.Server second = io.grpc.ServerBuilder.forPort(50062).addService(new UserServer.UserServiceImpl()).build().start();
+        io.grpc.Server third = io.grpc.ServerBuilder.forPort(50063).addService(new UserServer.UserServiceImpl()).build().start();
+
+        try (BalancedUserClient client = new BalancedUserClient(
+                new StaticEndpointResolver("localhost:50061,localhost:50062,localhost:50063"), BalancingPolicy.ROUND_ROBIN, Duration.ofMinutes(1))) {
+            second.shutdownNow().awaitTermination();
+            client.checkHealth();
+            assertFalse(client.backends().get(1).healthy());
+
+            for (int i = 0; i < 100; i++) {
+                client.getUser(i);
+            }
+            // the down replica's share is split between the others, not handed to its neighbour
+            assertEquals(50, client.backends().get(0).calls());
+            assertEquals(50, client.backends().get(2).calls());
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+            third.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBalancedClientSurvivesDuplicateEndpointsAndResolverFailures() throws Exception {
+        io.grpc.Server server = io.grpc.ServerBuilder.forPort(50064).addService(new UserServer.UserServiceImpl()).build().start();
+        AtomicInteger resolves = new AtomicInteger();
+        EndpointResolver flaky = () -> {
+            if (resolves.incrementAndGet() == 2) {
+                throw new IllegalStateException("endpoints file half written");
+            }
+            return EndpointResolver.parse("localhost:50064,localhost:50064");
+        };
+
+        try (BalancedUserClient client = new BalancedUserClient(flaky, BalancingPolicy.ROUND_ROBIN, Duration.ofMillis(50))) {
+            assertEquals(1, client.backends().size());
+            BalancedUserClient.Backend backend = client.backends().get(0);
+
+            // the failing round does not cancel the ones after it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (resolves.get() < 5 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(resolves.get() >= 5);
+            assertEquals(1, client.failedHealthChecks());
+            assertEquals("endpoints file half written", client.lastHealthCheckFailure().getMessage());
+            assertEquals(List.of(backend), client.backends());
+            assertEquals(7, client.getUser(7).getUserId());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeastOutstandingWithFileResolver() throws Exception {
+        io.grpc.Server first = io.grpc.ServerBuilder.forPort(50061).addService(new UserServer.UserServiceImpl()).build().start();
+        io.grpc.Server second = io.grpc.ServerBuilder.forPort(50062).addService(new UserServer.UserServiceImpl()).build().start();
+        Path endpoints = Files.createTempFile("user-servers", ".txt");
+        Files.writeString(endpoints, "# replicas\nlocalhost:50061\n");
+
+        try (BalancedUserClient client = new BalancedUserClient(
+                new FileEndpointResolver(endpoints), BalancingPolicy.LEAST_OUTSTANDING, Duration.ofMinutes(1))) {
+            assertEquals(1, client.backends().size());
+
+            Files.writeString(endpoints, "localhost:50061\nlocalhost:50062\n");
+            Files.setLastModifiedTime(endpoints, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+            client.checkHealth();
+            assertEquals(2, client.backends().size());
+
+            List<ListenableFuture<UserServiceOuterClass.UserResponse>> replies = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                replies.add(client.getUserFuture(i));
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, replies.get(i).get(10, TimeUnit.SECONDS).getUserId());
+            }
+            // both replicas took a share of the concurrent calls
+            assertTrue(client.backends().get(0).calls() > 0);
+            assertTrue(client.backends().get(1).calls() > 0);
+            // the counters drop in a listener that may still be running when get() returns
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (client.backends().get(0).outstanding() + client.backends().get(1).outstanding() != 0
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, client.backends().get(0).outstanding() + client.backends().get(1).outstanding());
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+            Files.deleteIfExists(endpoints);
+        }
+    }
+
+    @Test
+    public void testFileResolverKeepsEndpointsOnBadUpdate() throws Exception {
+        Path endpoints = Files.createTempFile("user-servers", ".txt");
+        try {
+            Files.writeString(endpoints, "localhost:50061\n");
+            FileEndpointResolver resolver = new FileEndpointResolver(endpoints);
+            assertNull(resolver.lastReloadFailure());
+
+            Files.writeString(endpoints, "localhost\n");
+            Files.setLastModifiedTime(endpoints, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+            assertEquals(EndpointResolver.parse("localhost:50061"), resolver.resolve());
+            assertTrue(resolver.lastReloadFailure() instanceof IllegalArgumentException);
+
+            Files.writeString(endpoints, "localhost:50062\n");
+            Files.setLastModifiedTime(endpoints, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+            assertEquals(EndpointResolver.parse("localhost:50062"), resolver.resolve());
+            assertNull(resolver.lastReloadFailure());
+        } finally {
+            Files.deleteIfExists(endpoints);
+        }
+    }
+
+    private static UserServiceOuterClass.UpdateUserRequest update(int id) {
+        return UserServiceOuterClass.UpdateUserRequest.newBuilder()
+                .setId(String.valueOf(id))
+                .setName("user-" + id)
+                .setEmail("user-" + id + "@example.com")
+                .build();
+    }
+
+    private static StreamObserver<UserServiceOuterClass.UpdateUsersAck> collect(List<UserServiceOuterClass.UpdateUsersAck> acks, CountDownLatch done) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(UserServiceOuterClass.UpdateUsersAck ack) {
+                synchronized (acks) {
+                    acks.add(ack);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        };
+    }
+
     // Data serialization/deserialization tests
     @Test
     public void testSerializationAndDeserialization() throws Exception {
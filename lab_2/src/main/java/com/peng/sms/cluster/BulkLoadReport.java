@@ -0,0 +1,110 @@
+package com.peng.sms.cluster;
+
+import redis.clients.jedis.HostAndPort;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of one {@link ClusterBulkLoader} run: throughput overall and batch latency per master.
+ */
+public class BulkLoadReport {
+
+    private final long keys;
+    private final long failed;
+    private final long redirected;
+    private final long elapsedNanos;
+    private final List<NodeStats> nodes;
+
+    BulkLoadReport(long keys, long failed, long redirected, long elapsedNanos, List<NodeStats> nodes) {
+        this.keys = keys;
+        this.failed = failed;
+        this.redirected = redirected;
+        this.elapsedNanos = elapsedNanos;
+        this.nodes = nodes;
+    }
+
+    // keys stored, including those that went through the redirect fallback
+    public long keys() {
+        return keys;
+    }
+
+    public long failed() {
+        return failed;
+    }
+
+    // keys rewritten one by one through JedisCluster after MOVED, ASK or a broken connection
+    public long redirected() {
+        return redirected;
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double keysPerSecond() {
+        return elapsedNanos == 0 ? 0 : keys * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public List<NodeStats> nodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%,d keys in %,d ms = %,.0f keys/s (failed %d, redirected %d)%n",
+                keys, elapsedMillis(), keysPerSecond(), failed, redirected));
+        out.append(String.format("  %-22s %10s %12s %14s %14s%n", "master", "batches", "keys", "mean batch ms", "max batch ms"));
+        for (NodeStats node : nodes) {
+            out.append(String.format("  %-22s %10d %12d %14.2f %14.2f%n",
+                    node.node(), node.batches(), node.keys(), node.meanBatchMillis(), node.maxBatchMillis()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Pipelined batches sent to one master, timed from first write to the last reply.
+     */
+    public static class NodeStats {
+
+        private final HostAndPort node;
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder keys = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        NodeStats(HostAndPort node) {
+            this.node = node;
+        }
+
+        void record(int batchKeys, long nanos) {
+            batches.increment();
+            keys.add(batchKeys);
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public HostAndPort node() {
+            return node;
+        }
+
+        public long batches() {
+            return batches.sum();
+        }
+
+        public long keys() {
+            return keys.sum();
+        }
+
+        public double meanBatchMillis() {
+            long count = batches.sum();
+            return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000;
+        }
+
+        public double maxBatchMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
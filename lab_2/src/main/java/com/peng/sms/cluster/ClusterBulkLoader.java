@@ -0,0 +1,312 @@
+package com.peng.sms.cluster;
+
+import com.peng.sms.codec.JsonProfileCodec;
+import com.peng.sms.codec.UserProfileCodec;
+import com.peng.sms.part_a.UserProfile;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Loads many keys into a Redis Cluster without one round trip per key. Keys are grouped by the
+ * master that owns their hash slot, cut into batches, and each batch goes to its master as one
+ * pipeline (or one MSET per slot). Every master has its own worker threads, so all masters are
+ * written in parallel, and a bounded queue per master keeps the reader from running ahead of the
+ * slowest one. Keys whose slot moved mid-load (MOVED / ASK) are rewritten through
+ * {@link JedisCluster}, which follows the redirect.
+ */
+public class ClusterBulkLoader {
+
+    public enum Mode {
+        // one SET per key, pipelined
+        PIPELINE,
+        // one MSET per slot within a batch; only pays off when keys share hash tags
+        MSET
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_WORKERS_PER_MASTER = 2;
+
+    private static final List<Map.Entry<byte[], byte[]>> END = new ArrayList<>();
+
+    private final JedisCluster cluster;
+    private final int batchSize;
+    private final int workersPerMaster;
+    private final Mode mode;
+
+    public ClusterBulkLoader(JedisCluster cluster) {
+        this(cluster, DEFAULT_BATCH_SIZE, DEFAULT_WORKERS_PER_MASTER, Mode.PIPELINE);
+    }
+
+    /**
+     * @param workersPerMaster connections per master; keep it within the cluster's pool size (8 by default)
+     */
+    public ClusterBulkLoader(JedisCluster cluster, int batchSize, int workersPerMaster, Mode mode) {
+        if (batchSize <= 0 || workersPerMaster <= 0) {
+            throw new IllegalArgumentException("batchSize and workersPerMaster must be positive");
+        }
+        this.cluster = cluster;
+        this.batchSize = batchSize;
+        this.workersPerMaster = workersPerMaster;
+        this.mode = mode;
+    }
+
+    /**
+     * Stores every profile as JSON under {@code user:<userId>}.
+     */
+    public BulkLoadReport loadProfiles(Iterator<UserProfile> profiles) throws InterruptedException {
+        return loadProfiles(profiles, JsonProfileCodec.INSTANCE);
+    }
+
+    /**
+     * Stores every profile under {@code user:<userId>}, encoded with {@code codec}.
+     */
+    public BulkLoadReport loadProfiles(Iterator<UserProfile> profiles, UserProfileCodec codec) throws InterruptedException {
+        return loadBinary(map(profiles, profile -> Map.entry(SafeEncoder.encode("user:" + profile.getUserId()), codec.encode(profile))));
+    }
+
+    /**
+     * Writes every entry and returns once all of them are acknowledged. The entries are consumed
+     * lazily, so the source may be far larger than the heap.
+     */
+    public BulkLoadReport load(Iterator<? extends Map.Entry<String, String>> entries) throws InterruptedException {
+        return loadBinary(map(entries, entry -> Map.entry(SafeEncoder.encode(entry.getKey()), SafeEncoder.encode(entry.getValue()))));
+    }
+
+    public BulkLoadReport loadBinary(Iterator<? extends Map.Entry<byte[], byte[]>> entries) throws InterruptedException {
+        ClusterTopology topology = ClusterTopology.load(cluster);
+        Map<HostAndPort, BlockingQueue<List<Map.Entry<byte[], byte[]>>>> queues = new HashMap<>();
+        Map<HostAndPort, List<Map.Entry<byte[], byte[]>>> pending = new HashMap<>();
+        List<BulkLoadReport.NodeStats> stats = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        LongAdder stored = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder redirected = new LongAdder();
+
+        long start = System.nanoTime();
+        for (HostAndPort master : topology.masters()) {
+            BlockingQueue<List<Map.Entry<byte[], byte[]>>> queue = new ArrayBlockingQueue<>(workersPerMaster * 4);
+            BulkLoadReport.NodeStats nodeStats = new BulkLoadReport.NodeStats(master);
+            queues.put(master, queue);
+            stats.add(nodeStats);
+            for (int i = 0; i < workersPerMaster; i++) {
+                Worker worker = new Worker(topology.anySlotOf(master), queue, nodeStats, stored, failed, redirected);
+                Thread thread = new Thread(worker, "bulk-load-" + master.getPort() + "-" + i);
+                thread.start();
+                workers.add(thread);
+            }
+        }
+
+        try {
+            while (entries.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = entries.next();
+                HostAndPort master = topology.masterFor(entry.getKey());
+                if (master == null) {
+                    // unassigned slot: let JedisCluster report or resolve it
+                    writeThroughCluster(List.of(entry), stored, failed, redirected);
+                    continue;
+                }
+                List<Map.Entry<byte[], byte[]>> batch = pending.computeIfAbsent(master, m -> new ArrayList<>(batchSize));
+                batch.add(entry);
+                if (batch.size() == batchSize) {
+                    queues.get(master).put(batch);
+                    pending.remove(master);
+                }
+            }
+            for (Map.Entry<HostAndPort, List<Map.Entry<byte[], byte[]>>> batch : pending.entrySet()) {
+                queues.get(batch.getKey()).put(batch.getValue());
+            }
+        } finally {
+            for (BlockingQueue<List<Map.Entry<byte[], byte[]>>> queue : queues.values()) {
+                for (int i = 0; i < workersPerMaster; i++) {
+                    queue.put(END);
+                }
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        return new BulkLoadReport(stored.sum(), failed.sum(), redirected.sum(), System.nanoTime() - start, stats);
+    }
+
+    private static <T, R> Iterator<R> map(Iterator<? extends T> source, Function<T, R> mapper) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public R next() {
+                return mapper.apply(source.next());
+            }
+        };
+    }
+
+    // the slow path: one command per key, with JedisCluster following MOVED / ASK and failovers
+    private void writeThroughCluster(List<Map.Entry<byte[], byte[]>> entries, LongAdder stored, LongAdder failed, LongAdder redirected) {
+        for (Map.Entry<byte[], byte[]> entry : entries) {
+            try {
+                cluster.set(entry.getKey(), entry.getValue());
+                stored.increment();
+                redirected.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final int slot;
+        private final BlockingQueue<List<Map.Entry<byte[], byte[]>>> queue;
+        private final BulkLoadReport.NodeStats stats;
+        private final LongAdder stored;
+        private final LongAdder failed;
+        private final LongAdder redirected;
+        private Connection connection;
+
+        Worker(int slot, BlockingQueue<List<Map.Entry<byte[], byte[]>>> queue, BulkLoadReport.NodeStats stats,
+               LongAdder stored, LongAdder failed, LongAdder redirected) {
+            this.slot = slot;
+            this.queue = queue;
+            this.stats = stats;
+            this.stored = stored;
+            this.failed = failed;
+            this.redirected = redirected;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<Map.Entry<byte[], byte[]>> batch;
+                while ((batch = queue.take()) != END) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeConnection();
+            }
+        }
+
+        private void write(List<Map.Entry<byte[], byte[]>> batch) {
+            long start = System.nanoTime();
+            List<Map.Entry<byte[], byte[]>> retry = new ArrayList<>();
+            try {
+                if (connection == null) {
+                    connection = cluster.getConnectionFromSlot(slot);
+                }
+                Pipeline pipeline = new Pipeline(connection);
+                List<List<Map.Entry<byte[], byte[]>>> commands = mode == Mode.MSET ? bySlot(batch) : singletons(batch);
+                for (List<Map.Entry<byte[], byte[]>> command : commands) {
+                    if (command.size() == 1) {
+                        pipeline.set(command.get(0).getKey(), command.get(0).getValue());
+                    } else {
+                        pipeline.mset(keysAndValues(command));
+                    }
+                }
+                List<Object> replies = pipeline.syncAndReturnAll();
+                for (int i = 0; i < replies.size(); i++) {
+                    if (replies.get(i) instanceof JedisDataException) {
+                        retry.addAll(commands.get(i));
+                    } else {
+                        stored.add(commands.get(i).size());
+                    }
+                }
+            } catch (RuntimeException e) {
+                // broken connection or failover: drop it and redo the whole batch the slow way
+                closeConnection();
+                retry = batch;
+            }
+            stats.record(batch.size(), System.nanoTime() - start);
+            if (!retry.isEmpty()) {
+                writeThroughCluster(retry, stored, failed, redirected);
+            }
+        }
+
+        private void closeConnection() {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (RuntimeException ignored) {
+                    // already broken
+                }
+                connection = null;
+            }
+        }
+    }
+
+    private static List<List<Map.Entry<byte[], byte[]>>> singletons(List<Map.Entry<byte[], byte[]>> batch) {
+        List<List<Map.Entry<byte[], byte[]>>> commands = new ArrayList<>(batch.size());
+        for (Map.Entry<byte[], byte[]> entry : batch) {
+            commands.add(List.of(entry));
+        }
+        return commands;
+    }
+
+    // MSET keys must share a slot
+    private static List<List<Map.Entry<byte[], byte[]>>> bySlot(List<Map.Entry<byte[], byte[]>> batch) {
+        Map<Integer, List<Map.Entry<byte[], byte[]>>> groups = new LinkedHashMap<>();
+        for (Map.Entry<byte[], byte[]> entry : batch) {
+            groups.computeIfAbsent(ClusterTopology.slot(entry.getKey()), s -> new ArrayList<>()).add(entry);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static byte[][] keysAndValues(List<Map.Entry<byte[], byte[]>> entries) {
+        byte[][] keysAndValues = new byte[entries.size() * 2][];
+        for (int i = 0; i < entries.size(); i++) {
+            keysAndValues[2 * i] = entries.get(i).getKey();
+            keysAndValues[2 * i + 1] = entries.get(i).getValue();
+        }
+        return keysAndValues;
+    }
+
+    /**
+     * Loads synthetic profiles into the local 7001-7006 cluster.
+     * <pre>
+     * ClusterBulkLoader [count] [batchSize] [workersPerMaster] [PIPELINE|MSET] [json|binary]
+     * </pre>
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WORKERS_PER_MASTER;
+        Mode mode = args.length > 3 ? Mode.valueOf(args[3]) : Mode.PIPELINE;
+        UserProfileCodec codec = UserProfileCodec.forName(args.length > 4 ? args[4] : "json");
+
+        Set<HostAndPort> nodes = new HashSet<>();
+        for (int port = 7001; port <= 7006; port++) {
+            nodes.add(new HostAndPort("localhost", port));
+        }
+        try (JedisCluster cluster = new JedisCluster(nodes)) {
+            Iterator<UserProfile> profiles = new Iterator<>() {
+                long next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public UserProfile next() {
+                    long i = next++;
+                    return new UserProfile(String.format("bulk%09d", i), "bulk_user" + i, "bulk" + i + "@example.com");
+                }
+            };
+            System.out.println("Loading " + count + " profiles (batch " + batchSize + ", " + workers + " workers per master, " + mode + ", " + codec.name() + ")");
+            BulkLoadReport report = new ClusterBulkLoader(cluster, batchSize, workers, mode).loadProfiles(profiles, codec);
+            System.out.println(report);
+        }
+    }
+}
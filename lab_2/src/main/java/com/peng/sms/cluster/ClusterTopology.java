@@ -0,0 +1,107 @@
+package com.peng.sms.cluster;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Snapshot of which master (and which replicas) serve each of the 16384 hash slots, read once
+ * with CLUSTER SLOTS. A snapshot goes stale when slots move or a replica is promoted; callers
+ * reload it when a node answers MOVED instead of trusting it forever.
+ */
+public class ClusterTopology {
+
+    public static final int SLOTS = 16384;
+
+    private final HostAndPort[] masterBySlot = new HostAndPort[SLOTS];
+    private final Map<HostAndPort, List<HostAndPort>> replicasByMaster = new LinkedHashMap<>();
+    private final Map<HostAndPort, Integer> firstSlotByMaster = new LinkedHashMap<>();
+
+    private ClusterTopology() {
+    }
+
+    /**
+     * Reads the slot layout through any reachable node of {@code cluster}.
+     */
+    public static ClusterTopology load(JedisCluster cluster) {
+        RuntimeException last = null;
+        for (String node : cluster.getClusterNodes().keySet()) {
+            try (Jedis jedis = new Jedis(cluster.getClusterNodes().get(node).getResource())) {
+                return parse(jedis.clusterSlots());
+            } catch (RuntimeException e) {
+                last = e;
+            }
+        }
+        throw new IllegalStateException("no cluster node answered CLUSTER SLOTS", last);
+    }
+
+    // each entry: [start, end, [host, port, id], [replica host, port, id]...]
+    static ClusterTopology parse(List<Object> slots) {
+        ClusterTopology topology = new ClusterTopology();
+        for (Object entry : slots) {
+            List<?> range = (List<?>) entry;
+            int start = ((Long) range.get(0)).intValue();
+            int end = ((Long) range.get(1)).intValue();
+            HostAndPort master = node((List<?>) range.get(2));
+            List<HostAndPort> replicas = topology.replicasByMaster.computeIfAbsent(master, m -> new ArrayList<>());
+            for (int i = 3; i < range.size(); i++) {
+                HostAndPort replica = node((List<?>) range.get(i));
+                if (!replicas.contains(replica)) {
+                    replicas.add(replica);
+                }
+            }
+            topology.firstSlotByMaster.merge(master, start, Math::min);
+            Arrays.fill(topology.masterBySlot, start, end + 1, master);
+        }
+        return topology;
+    }
+
+    private static HostAndPort node(List<?> node) {
+        return new HostAndPort(new String((byte[]) node.get(0), StandardCharsets.UTF_8), ((Long) node.get(1)).intValue());
+    }
+
+    public static int slot(String key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    public static int slot(byte[] key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    // null while the slot is unassigned
+    public HostAndPort masterFor(int slot) {
+        return masterBySlot[slot];
+    }
+
+    public HostAndPort masterFor(String key) {
+        return masterBySlot[slot(key)];
+    }
+
+    public HostAndPort masterFor(byte[] key) {
+        return masterBySlot[slot(key)];
+    }
+
+    public List<HostAndPort> replicasFor(int slot) {
+        HostAndPort master = masterBySlot[slot];
+        return master == null ? List.of() : replicasByMaster.getOrDefault(master, List.of());
+    }
+
+    public Set<HostAndPort> masters() {
+        return Collections.unmodifiableSet(replicasByMaster.keySet());
+    }
+
+    /**
+     * Some slot served by {@code master}, for {@link JedisCluster#getConnectionFromSlot(int)}.
+     */
+    public int anySlotOf(HostAndPort master) {
+        Integer slot = firstSlotByMaster.get(master);
+        if (slot == null) {
+            throw new IllegalArgumentException("not a master: " + master);
+        }
+        return slot;
+    }
+}
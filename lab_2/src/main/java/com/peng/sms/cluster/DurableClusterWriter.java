@@ -0,0 +1,242 @@
+package com.peng.sms.cluster;
+
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.util.KeyValue;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Writes to a Redis Cluster under a {@link WriteConcern}. {@code JedisCluster} cannot WAIT,
+ * because WAIT only covers writes made on the same connection, so each write here borrows the
+ * connection of its slot's master, writes, and issues {@code WAIT numreplicas timeout} (or
+ * {@code WAITAOF} when fsync is asked for) on that connection before returning it.
+ * <p>
+ * {@link #setAll} pipelines a whole batch per master and follows it with a single WAIT, which
+ * covers every write before it, so durable bulk writes pay one replication round trip per master
+ * instead of one per key. Keys a master answers MOVED for are regrouped by their new owners after
+ * a topology reload and sent again; if some keys still cannot be written, a
+ * {@link PartialWriteException} reports which ones were and which were not.
+ */
+public class DurableClusterWriter implements AutoCloseable {
+
+    // rounds of regrouping after MOVED before the remaining keys are reported failed
+    private static final int MAX_ROUNDS = 3;
+
+    private final JedisCluster cluster;
+    private final long timeoutMillis;
+    private final boolean fsync;
+    private final ExecutorService masters;
+    private volatile ClusterTopology topology;
+
+    public DurableClusterWriter(JedisCluster cluster) {
+        this(cluster, Duration.ofSeconds(1), false);
+    }
+
+    /**
+     * @param timeout longest WAIT before reporting a write as under-replicated; the write itself is not undone
+     * @param fsync   wait with WAITAOF (Redis 7.2+) until the copies are fsynced to their AOF, not just received
+     */
+    public DurableClusterWriter(JedisCluster cluster, Duration timeout, boolean fsync) {
+        this.cluster = cluster;
+        this.timeoutMillis = timeout.toMillis();
+        this.fsync = fsync;
+        this.topology = ClusterTopology.load(cluster);
+        this.masters = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "durable-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Outcome of one WAIT: {@code acked} replicas confirmed out of {@code required} for the
+     * {@code written} keys, all stored on {@code master}.
+     */
+    public record Ack(HostAndPort master, List<String> written, int required, long acked, long latencyNanos) {
+
+        public int keys() {
+            return written.size();
+        }
+
+        public boolean satisfied() {
+            return acked >= required;
+        }
+
+        public double latencyMillis() {
+            return latencyNanos / 1_000_000.0;
+        }
+    }
+
+    public Ack set(String key, String value, WriteConcern concern) {
+        Map<String, String> entry = Map.of(key, value);
+        for (int round = 1; ; round++) {
+            Outcome outcome = write(topology.masterFor(key), entry, concern);
+            if (outcome.ack() != null) {
+                return outcome.ack();
+            }
+            if (!outcome.failed().isEmpty()) {
+                throw outcome.failed().get(key);
+            }
+            if (round == MAX_ROUNDS) {
+                throw outcome.lastMove();
+            }
+            topology = ClusterTopology.load(cluster);
+        }
+    }
+
+    /**
+     * Writes every entry with one pipeline and one WAIT per master, all masters in parallel.
+     *
+     * @throws PartialWriteException when some entries were not written; it lists the ones that were
+     */
+    public List<Ack> setAll(Map<String, String> entries, WriteConcern concern) throws InterruptedException {
+        List<Ack> acks = new ArrayList<>();
+        Map<String, RuntimeException> failures = new LinkedHashMap<>();
+        Map<String, String> remaining = entries;
+        for (int round = 1; !remaining.isEmpty(); round++) {
+            ClusterTopology current = topology;
+            Map<HostAndPort, Map<String, String>> byMaster = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : remaining.entrySet()) {
+                // unassigned slots group under null, which write() reports as failed
+                byMaster.computeIfAbsent(current.masterFor(entry.getKey()), m -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+            }
+            List<Future<Outcome>> pending = new ArrayList<>(byMaster.size());
+            for (Map.Entry<HostAndPort, Map<String, String>> group : byMaster.entrySet()) {
+                pending.add(masters.submit(() -> write(group.getKey(), group.getValue(), concern)));
+            }
+            Map<String, String> moved = new LinkedHashMap<>();
+            JedisMovedDataException lastMove = null;
+            for (Future<Outcome> future : pending) {
+                Outcome outcome;
+                try {
+                    outcome = future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                }
+                if (outcome.ack() != null) {
+                    acks.add(outcome.ack());
+                }
+                failures.putAll(outcome.failed());
+                moved.putAll(outcome.moved());
+                lastMove = outcome.lastMove() != null ? outcome.lastMove() : lastMove;
+            }
+            if (moved.isEmpty()) {
+                break;
+            }
+            if (round == MAX_ROUNDS) {
+                for (String key : moved.keySet()) {
+                    failures.put(key, lastMove);
+                }
+                break;
+            }
+            // some slots changed owner since the last look: refresh the map and regroup only those keys
+            topology = ClusterTopology.load(cluster);
+            remaining = moved;
+        }
+        if (!failures.isEmpty()) {
+            throw new PartialWriteException(acks, failures);
+        }
+        return acks;
+    }
+
+    /**
+     * One pipeline to {@code master}, then one WAIT covering whatever it stored. Never throws for
+     * a key: keys answered with MOVED come back in {@code moved}, other errors in {@code failed}.
+     */
+    private Outcome write(HostAndPort master, Map<String, String> entries, WriteConcern concern) {
+        if (master == null) {
+            return failedAll(entries, new IllegalStateException("slot has no master"));
+        }
+        Connection connection;
+        try {
+            connection = connectionTo(master, entries.keySet().iterator().next());
+        } catch (RuntimeException e) {
+            return failedAll(entries, e);
+        }
+        try (Jedis jedis = new Jedis(connection)) {
+            long start = System.nanoTime();
+            List<Object> replies;
+            try {
+                Pipeline pipeline = new Pipeline(connection);
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    pipeline.set(entry.getKey(), entry.getValue());
+                }
+                replies = pipeline.syncAndReturnAll();
+            } catch (RuntimeException e) {
+                // the connection broke mid-batch: none of these writes can be confirmed
+                return failedAll(entries, e);
+            }
+            List<String> written = new ArrayList<>(entries.size());
+            Map<String, String> moved = new LinkedHashMap<>();
+            Map<String, RuntimeException> failed = new LinkedHashMap<>();
+            JedisMovedDataException lastMove = null;
+            int i = 0;
+            for (String key : entries.keySet()) {
+                Object reply = replies.get(i++);
+                if (reply instanceof JedisMovedDataException move) {
+                    moved.put(key, entries.get(key));
+                    lastMove = move;
+                } else if (reply instanceof RuntimeException error) {
+                    failed.put(key, error);
+                } else {
+                    written.add(key);
+                }
+            }
+            if (written.isEmpty()) {
+                return new Outcome(null, moved, failed, lastMove);
+            }
+            int required = concern.requiredReplicas(topology.replicasFor(ClusterTopology.slot(written.get(0))).size());
+            long acked;
+            try {
+                acked = required == 0 ? 0 : awaitReplicas(jedis, required);
+            } catch (RuntimeException e) {
+                // the writes are stored either way; report them as not confirmed by any replica
+                acked = 0;
+            }
+            Ack ack = new Ack(master, List.copyOf(written), required, acked, System.nanoTime() - start);
+            return new Outcome(ack, moved, failed, lastMove);
+        }
+    }
+
+    private static Outcome failedAll(Map<String, String> entries, RuntimeException cause) {
+        Map<String, RuntimeException> failed = new LinkedHashMap<>();
+        entries.keySet().forEach(key -> failed.put(key, cause));
+        return new Outcome(null, Map.of(), failed, null);
+    }
+
+    // the master's own pool; JedisCluster's slot cache may still point a moved slot at its old owner
+    private Connection connectionTo(HostAndPort master, String key) {
+        ConnectionPool pool = cluster.getClusterNodes().get(master.toString());
+        return pool != null ? pool.getResource() : cluster.getConnectionFromSlot(ClusterTopology.slot(key));
+    }
+
+    /**
+     * What one pipeline to one master did: its WAIT (null when nothing was stored), the keys to
+     * send again after a topology reload, and the keys that failed outright.
+     */
+    private record Outcome(Ack ack, Map<String, String> moved, Map<String, RuntimeException> failed,
+                           JedisMovedDataException lastMove) {
+    }
+
+    private long awaitReplicas(Jedis jedis, int required) {
+        if (fsync) {
+            // WAITAOF numlocal numreplicas timeout: the master's own AOF plus the replicas'
+            KeyValue<Long, Long> fsynced = jedis.waitAOF(1, required, timeoutMillis);
+            return fsynced.getKey() >= 1 ? fsynced.getValue() : 0;
+        }
+        return jedis.waitReplicas(required, timeoutMillis);
+    }
+
+    @Override
+    public void close() {
+        masters.shutdownNow();
+    }
+}
@@ -0,0 +1,47 @@
+package com.peng.sms.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown by {@link DurableClusterWriter#setAll} when some entries of a batch could not be written.
+ * The entries in {@link #written()} are stored and were waited on as usual; those in
+ * {@link #failures()} were not confirmed and may or may not have reached a master.
+ */
+public class PartialWriteException extends RuntimeException {
+
+    private final List<DurableClusterWriter.Ack> written;
+    private final Map<String, RuntimeException> failures;
+
+    PartialWriteException(List<DurableClusterWriter.Ack> written, Map<String, RuntimeException> failures) {
+        super(failures.size() + " of " + (failures.size() + count(written)) + " writes failed, first: "
+                + failures.values().iterator().next().getMessage());
+        this.written = Collections.unmodifiableList(written);
+        this.failures = Collections.unmodifiableMap(failures);
+        failures.values().forEach(this::addSuppressed);
+    }
+
+    // one per WAIT, as setAll would have returned them
+    public List<DurableClusterWriter.Ack> written() {
+        return written;
+    }
+
+    public List<String> writtenKeys() {
+        List<String> keys = new ArrayList<>();
+        for (DurableClusterWriter.Ack ack : written) {
+            keys.addAll(ack.written());
+        }
+        return keys;
+    }
+
+    // key -> why it was not written
+    public Map<String, RuntimeException> failures() {
+        return failures;
+    }
+
+    private static int count(List<DurableClusterWriter.Ack> written) {
+        return written.stream().mapToInt(DurableClusterWriter.Ack::keys).sum();
+    }
+}
@@ -0,0 +1,319 @@
+package com.peng.sms.cluster;
+
+import com.peng.sms.codec.JsonProfileCodec;
+import com.peng.sms.codec.UserProfileCodec;
+import com.peng.sms.part_a.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process LRU of {@link UserProfile}s in front of a {@link JedisCluster}, kept coherent by
+ * Redis server-assisted client-side caching. Every cluster node gets one connection that turns on
+ * {@code CLIENT TRACKING on REDIRECT <own id> BCAST PREFIX p...} and subscribes to
+ * {@code __redis__:invalidate}; each node then announces every key written under the prefixes, and
+ * the key is dropped here. Replicas are tracked too, so a promoted replica is already covered after
+ * a failover, at the price of each write being announced by its master and again by its replicas.
+ * That is why a prefix is required: without one every write to the cluster, bulk loads included,
+ * would be pushed to every client.
+ * <p>
+ * A fetch races with invalidations: a key is only cached if no invalidation for it arrived while
+ * it was being read. While any tracking connection is down the cache is emptied and bypassed,
+ * since invalidations may have been missed.
+ */
+public class ProfileNearCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProfileNearCache.class);
+
+    private static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    // where UserProfiles live
+    public static final String DEFAULT_PREFIX = "user:";
+
+    private final JedisCluster cluster;
+    private final UserProfileCodec codec;
+    private final int maxEntries;
+    private final String[] prefixes;
+    private final LinkedHashMap<String, UserProfile> entries;
+    // keys being fetched; an invalidation removes the token so the stale result is not cached
+    private final Map<String, Object> fetching = new ConcurrentHashMap<>();
+    private final List<Tracker> trackers = new ArrayList<>();
+    private final AtomicInteger trackersDown = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile boolean closed;
+
+    // tracks keys under DEFAULT_PREFIX
+    public ProfileNearCache(JedisCluster cluster, int maxEntries) {
+        this(cluster, maxEntries, DEFAULT_PREFIX);
+    }
+
+    public ProfileNearCache(JedisCluster cluster, int maxEntries, String... prefixes) {
+        this(cluster, maxEntries, JsonProfileCodec.INSTANCE, DefaultJedisClientConfig.builder().build(), prefixes);
+    }
+
+    /**
+     * @param config   for the tracking connections; match the cluster's credentials
+     * @param prefixes key prefixes to track, at least one; only keys under them can be cached
+     */
+    public ProfileNearCache(JedisCluster cluster, int maxEntries, UserProfileCodec codec, JedisClientConfig config, String... prefixes) {
+        if (prefixes.length == 0 || Arrays.stream(prefixes).anyMatch(prefix -> prefix == null || prefix.isEmpty())) {
+            throw new IllegalArgumentException("at least one non-empty key prefix is required");
+        }
+        this.cluster = cluster;
+        this.codec = codec;
+        this.maxEntries = maxEntries;
+        this.prefixes = prefixes.clone();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserProfile> eldest) {
+                return size() > ProfileNearCache.this.maxEntries;
+            }
+        };
+        CountDownLatch subscribed = new CountDownLatch(cluster.getClusterNodes().size());
+        for (String node : cluster.getClusterNodes().keySet()) {
+            Tracker tracker = new Tracker(HostAndPort.from(node), config, subscribed);
+            trackers.add(tracker);
+            tracker.start();
+        }
+        try {
+            if (!subscribed.await(5, TimeUnit.SECONDS)) {
+                close();
+                throw new IllegalStateException("tracking connections not ready after 5s");
+            }
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while starting tracking", e);
+        }
+    }
+
+    /**
+     * The cached profile, or a read from the cluster on a miss; null when the key does not exist.
+     */
+    public UserProfile get(String key) {
+        if (!tracked(key)) {
+            // no node would announce a change to it, so it is never cached
+            misses.increment();
+            byte[] value = cluster.get(SafeEncoder.encode(key));
+            return value == null ? null : codec.decode(value);
+        }
+        if (trackersDown.get() == 0) {
+            synchronized (entries) {
+                UserProfile cached = entries.get(key);
+                if (cached != null) {
+                    hits.increment();
+                    return cached;
+                }
+            }
+        }
+        misses.increment();
+        Object token = new Object();
+        fetching.put(key, token);
+        try {
+            byte[] value = cluster.get(SafeEncoder.encode(key));
+            UserProfile profile = value == null ? null : codec.decode(value);
+            // cache only if no invalidation for this key arrived during the read
+            if (profile != null && trackersDown.get() == 0 && fetching.get(key) == token) {
+                synchronized (entries) {
+                    if (fetching.get(key) == token) {
+                        entries.put(key, profile);
+                    }
+                }
+            }
+            return profile;
+        } finally {
+            fetching.remove(key, token);
+        }
+    }
+
+    /**
+     * Writes through to the cluster. The local copy is dropped rather than replaced; the next read
+     * fetches the stored value, so every client caches what Redis holds.
+     */
+    public void put(String key, UserProfile profile) {
+        cluster.set(SafeEncoder.encode(key), codec.encode(profile));
+        invalidate(key);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // keys announced, once by the master and once by each replica of it
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public double hitRatio() {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : hits.sum() / (double) total;
+    }
+
+    // nodes whose tracking connection is down; while any is, the cache is bypassed
+    public int trackingConnectionsDown() {
+        return trackersDown.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Tracker tracker : trackers) {
+            tracker.shutdown();
+        }
+        clear();
+    }
+
+    private boolean tracked(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void invalidate(String key) {
+        synchronized (entries) {
+            fetching.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            fetching.clear();
+            entries.clear();
+        }
+    }
+
+    /**
+     * One node's tracking connection, reconnecting until the cache is closed.
+     */
+    private class Tracker extends Thread {
+
+        private final HostAndPort node;
+        private final JedisClientConfig config;
+        private final CountDownLatch subscribed;
+        private volatile Connection connection;
+        private boolean down;
+
+        Tracker(HostAndPort node, JedisClientConfig config, CountDownLatch subscribed) {
+            super("near-cache-" + node.getPort());
+            setDaemon(true);
+            this.node = node;
+            this.config = config;
+            this.subscribed = subscribed;
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try (Connection tracking = new Connection(node, config)) {
+                    connection = tracking;
+                    track(tracking);
+                } catch (RuntimeException e) {
+                    if (closed) {
+                        return;
+                    }
+                    markDown();
+                    log.warn("lost tracking connection to {}: {}", node, e.getMessage());
+                    try {
+                        Thread.sleep(RECONNECT_DELAY_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void track(Connection tracking) {
+            tracking.sendCommand(Protocol.Command.CLIENT, "ID");
+            long id = (Long) tracking.getOne();
+            List<String> args = new ArrayList<>(List.of("TRACKING", "on", "REDIRECT", Long.toString(id), "BCAST"));
+            for (String prefix : prefixes) {
+                args.add("PREFIX");
+                args.add(prefix);
+            }
+            tracking.sendCommand(Protocol.Command.CLIENT, args.toArray(new String[0]));
+            tracking.getStatusCodeReply();
+            tracking.sendCommand(Protocol.Command.SUBSCRIBE, INVALIDATE_CHANNEL);
+            tracking.getOne();
+            // pushes can be minutes apart; never time the read out
+            tracking.setTimeoutInfinite();
+            markUp();
+            subscribed.countDown();
+            while (!closed) {
+                onPush(tracking.getOne());
+            }
+        }
+
+        // ["message", "__redis__:invalidate", [key, ...] or null when the node was flushed]
+        private void onPush(Object push) {
+            if (!(push instanceof List<?> message) || message.size() < 3) {
+                return;
+            }
+            Object keys = message.get(2);
+            if (keys == null) {
+                clear();
+                invalidations.increment();
+                return;
+            }
+            if (keys instanceof List<?> list) {
+                for (Object key : list) {
+                    invalidate(SafeEncoder.encode((byte[]) key));
+                    invalidations.increment();
+                }
+            }
+        }
+
+        private void markDown() {
+            if (!down) {
+                down = true;
+                trackersDown.incrementAndGet();
+            }
+            clear();
+        }
+
+        private void markUp() {
+            if (down) {
+                down = false;
+                // anything cached before the outage may have missed its invalidation
+                clear();
+                trackersDown.decrementAndGet();
+            }
+        }
+
+        void shutdown() {
+            Connection current = connection;
+            if (current != null) {
+                current.disconnect();
+            }
+            interrupt();
+        }
+    }
+}
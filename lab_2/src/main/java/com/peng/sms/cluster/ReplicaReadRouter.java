@@ -0,0 +1,293 @@
+package com.peng.sms.cluster;
+
+import com.peng.sms.codec.JsonProfileCodec;
+import com.peng.sms.part_a.UserProfile;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads reads over every node of a Redis Cluster: a key is read round-robin from its master and
+ * those of the master's replicas that are fresh enough, with {@code READONLY} connections to the
+ * replicas. A poller compares each master's {@code master_repl_offset} with each replica's
+ * {@code slave_repl_offset} every few tens of milliseconds; a replica is skipped while it is more
+ * than {@code maxLagBytes} behind, while the newest master offset it holds is older than
+ * {@code maxStaleness}, or while its link to the master is down. Reads then fall back to the
+ * master, so staleness stays bounded by roughly {@code maxStaleness} plus one poll interval.
+ */
+public class ReplicaReadRouter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaReadRouter.class);
+
+    public static final long DEFAULT_MAX_LAG_BYTES = 64 * 1024;
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofMillis(200);
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(50);
+    // re-read CLUSTER SLOTS every this many polls, to pick up failovers and new replicas
+    private static final int TOPOLOGY_REFRESH_POLLS = 20;
+
+    private final JedisCluster cluster;
+    private final JedisClientConfig config;
+    private final long maxLagBytes;
+    private final long maxStalenessMillis;
+    private final long pollIntervalMillis;
+    private final boolean includeMasters;
+    private final ScheduledExecutorService poller;
+    private final Map<HostAndPort, JedisPool> replicaPools = new ConcurrentHashMap<>();
+    private final Map<HostAndPort, Jedis> pollConnections = new HashMap<>();
+    // recent (time, master_repl_offset) samples per master, newest last
+    private final Map<HostAndPort, Deque<long[]>> offsetHistory = new HashMap<>();
+    private final Map<HostAndPort, ReplicaState> states = new ConcurrentHashMap<>();
+    private final Map<HostAndPort, LongAdder> readsByNode = new ConcurrentHashMap<>();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder failedPolls = new LongAdder();
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile ClusterTopology topology;
+    private int polls;
+
+    /**
+     * What the last poll saw of one replica.
+     *
+     * @param lagBytes     master offset minus replica offset
+     * @param stalenessMillis age of the newest master offset the replica has; -1 when older than the history kept
+     */
+    public record ReplicaState(HostAndPort replica, HostAndPort master, boolean linkUp, long lagBytes,
+                               long stalenessMillis, long polledAtMillis, boolean eligible) {
+    }
+
+    public ReplicaReadRouter(JedisCluster cluster) {
+        this(cluster, DEFAULT_MAX_LAG_BYTES, DEFAULT_MAX_STALENESS, DEFAULT_POLL_INTERVAL, true,
+                DefaultJedisClientConfig.builder().build());
+    }
+
+    /**
+     * @param includeMasters also send reads to the masters, so every node of the cluster takes a share
+     * @param config         for the replica and polling connections; match the cluster's credentials
+     */
+    public ReplicaReadRouter(JedisCluster cluster, long maxLagBytes, Duration maxStaleness, Duration pollInterval,
+                             boolean includeMasters, JedisClientConfig config) {
+        this.cluster = cluster;
+        this.config = config;
+        this.maxLagBytes = maxLagBytes;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.includeMasters = includeMasters;
+        this.topology = ClusterTopology.load(cluster);
+        poll();
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public String get(String key) {
+        int slot = ClusterTopology.slot(key);
+        HostAndPort replica = pickReplica(slot);
+        if (replica != null) {
+            try (Jedis jedis = replicaPools.computeIfAbsent(replica, this::newReplicaPool).getResource()) {
+                String value = jedis.get(key);
+                count(replica);
+                return value;
+            } catch (JedisDataException e) {
+                // MOVED: the slot left this replica's master; read from the owner instead
+            } catch (RuntimeException e) {
+                markIneligible(replica);
+            }
+            fallbacks.increment();
+        }
+        String value = cluster.get(key);
+        count(topology.masterFor(slot));
+        return value;
+    }
+
+    public UserProfile getProfile(String key) {
+        String json = get(key);
+        return json == null ? null : JsonProfileCodec.INSTANCE.fromJson(json);
+    }
+
+    public Collection<ReplicaState> replicaStates() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
+    public Map<HostAndPort, Long> readsByNode() {
+        Map<HostAndPort, Long> reads = new TreeMap<>(Comparator.comparing(HostAndPort::toString));
+        readsByNode.forEach((node, count) -> reads.put(node, count.sum()));
+        return reads;
+    }
+
+    // replica reads abandoned for the master after an error or MOVED
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    // poll rounds that threw; replicas not refreshed for a few intervals stop taking reads
+    public long failedPolls() {
+        return failedPolls.sum();
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        try {
+            poller.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        replicaPools.values().forEach(JedisPool::close);
+        synchronized (this) {
+            pollConnections.values().forEach(Jedis::close);
+        }
+    }
+
+    // null means read from the master
+    private HostAndPort pickReplica(int slot) {
+        List<HostAndPort> replicas = topology.replicasFor(slot);
+        List<HostAndPort> candidates = new ArrayList<>(replicas.size());
+        long now = System.currentTimeMillis();
+        for (HostAndPort replica : replicas) {
+            ReplicaState state = states.get(replica);
+            // a state the poller has not refreshed lately says nothing about the replica now
+            if (state != null && state.eligible() && now - state.polledAtMillis() <= 3 * pollIntervalMillis) {
+                candidates.add(replica);
+            }
+        }
+        int choices = candidates.size() + (includeMasters ? 1 : 0);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        int pick = Math.floorMod(next.getAndIncrement(), choices);
+        return pick < candidates.size() ? candidates.get(pick) : null;
+    }
+
+    private void count(HostAndPort node) {
+        if (node != null) {
+            readsByNode.computeIfAbsent(node, n -> new LongAdder()).increment();
+        }
+    }
+
+    private void markIneligible(HostAndPort replica) {
+        states.computeIfPresent(replica, (node, state) -> new ReplicaState(node, state.master(), state.linkUp(),
+                state.lagBytes(), state.stalenessMillis(), state.polledAtMillis(), false));
+    }
+
+    private JedisPool newReplicaPool(HostAndPort replica) {
+        GenericObjectPoolConfig<Jedis> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(16);
+        return new JedisPool(poolConfig, new ReadOnlyFactory(replica, config));
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            failedPolls.increment();
+            log.warn("replica poll failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void poll() {
+        if (++polls % TOPOLOGY_REFRESH_POLLS == 0) {
+            topology = ClusterTopology.load(cluster);
+        }
+        ClusterTopology current = topology;
+        for (HostAndPort master : current.masters()) {
+            Long masterOffset = offset(master, "master_repl_offset");
+            long now = System.currentTimeMillis();
+            Deque<long[]> history = offsetHistory.computeIfAbsent(master, m -> new ArrayDeque<>());
+            if (masterOffset != null) {
+                history.addLast(new long[]{now, masterOffset});
+                // keep a little more history than the staleness bound needs
+                while (history.size() > 2 && now - history.peekFirst()[0] > 2 * maxStalenessMillis + pollIntervalMillis) {
+                    history.removeFirst();
+                }
+            }
+            for (HostAndPort replica : current.replicasFor(current.anySlotOf(master))) {
+                states.put(replica, observe(replica, master, masterOffset, history, now));
+            }
+        }
+    }
+
+    private ReplicaState observe(HostAndPort replica, HostAndPort master, Long masterOffset, Deque<long[]> history, long now) {
+        Map<String, String> info = info(replica);
+        if (masterOffset == null || info == null) {
+            return new ReplicaState(replica, master, false, -1, -1, now, false);
+        }
+        boolean linkUp = "up".equals(info.get("master_link_status"));
+        long replicaOffset = Long.parseLong(info.getOrDefault("slave_repl_offset", "-1"));
+        // polled after the master, so the replica may already be ahead of that sample
+        long lagBytes = Math.max(0, masterOffset - replicaOffset);
+        long stalenessMillis = staleness(history, replicaOffset, now);
+        boolean eligible = linkUp && replicaOffset >= 0 && lagBytes <= maxLagBytes
+                && stalenessMillis >= 0 && stalenessMillis <= maxStalenessMillis;
+        return new ReplicaState(replica, master, linkUp, lagBytes, stalenessMillis, now, eligible);
+    }
+
+    /**
+     * How long ago the master was at an offset the replica has reached: 0 when the replica has
+     * everything the newest sample shows, -1 when it is behind every sample kept.
+     */
+    private static long staleness(Deque<long[]> history, long replicaOffset, long now) {
+        Iterator<long[]> newestFirst = history.descendingIterator();
+        while (newestFirst.hasNext()) {
+            long[] sample = newestFirst.next();
+            if (sample[1] <= replicaOffset) {
+                return sample == history.peekLast() ? 0 : now - sample[0];
+            }
+        }
+        return -1;
+    }
+
+    private Long offset(HostAndPort node, String field) {
+        Map<String, String> info = info(node);
+        String value = info == null ? null : info.get(field);
+        return value == null ? null : Long.parseLong(value);
+    }
+
+    private Map<String, String> info(HostAndPort node) {
+        try {
+            Jedis jedis = pollConnections.computeIfAbsent(node, n -> new Jedis(n, config));
+            Map<String, String> fields = new HashMap<>();
+            for (String line : jedis.info("replication").split("\r?\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    fields.put(line.substring(0, colon), line.substring(colon + 1).trim());
+                }
+            }
+            return fields;
+        } catch (RuntimeException e) {
+            Jedis broken = pollConnections.remove(node);
+            if (broken != null) {
+                broken.close();
+            }
+            return null;
+        }
+    }
+
+    // every pooled replica connection is switched to READONLY once, when it is created
+    private static class ReadOnlyFactory extends JedisFactory {
+
+        ReadOnlyFactory(HostAndPort replica, JedisClientConfig config) {
+            super(replica, config);
+        }
+
+        @Override
+        public PooledObject<Jedis> makeObject() throws Exception {
+            PooledObject<Jedis> pooled = super.makeObject();
+            pooled.getObject().readonly();
+            return pooled;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.peng.sms.cluster;
+
+/**
+ * How many copies must hold a write before {@link DurableClusterWriter} reports it done.
+ * Counted per shard: the master plus its replicas.
+ */
+public enum WriteConcern {
+    // the master alone; replication stays asynchronous
+    ONE,
+    // a majority of the shard's copies, master included
+    QUORUM,
+    // the master and every replica it currently has
+    ALL;
+
+    /**
+     * Replica acknowledgements to WAIT for on a shard with {@code replicas} replicas.
+     */
+    public int requiredReplicas(int replicas) {
+        switch (this) {
+            case ONE:
+                return 0;
+            case QUORUM:
+                // majority of (replicas + 1) copies, minus the master itself
+                return (replicas + 1) / 2;
+            default:
+                return replicas;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.peng.sms.codec;
+
+import com.peng.sms.part_a.UserProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact hand-rolled format: no field names, lengths and numbers as varints.
+ * <pre>
+ * format version (1 byte)
+ * userId, username, email   varint (length + 1, 0 for null) + UTF-8 bytes
+ * lastLoginTime             varint
+ * version                   varint
+ * </pre>
+ * New fields go at the end behind a new format version; {@link #decode} rejects versions it does
+ * not know instead of guessing.
+ */
+public final class BinaryProfileCodec implements UserProfileCodec {
+
+    public static final BinaryProfileCodec INSTANCE = new BinaryProfileCodec();
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private BinaryProfileCodec() {
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] encode(UserProfile profile) {
+        byte[] userId = utf8(profile.getUserId());
+        byte[] username = utf8(profile.getUsername());
+        byte[] email = utf8(profile.getEmail());
+        // 1 version byte, up to 5 bytes per length, 10 for the timestamp, 5 for the version
+        byte[] out = new byte[1 + 15 + length(userId) + length(username) + length(email) + 10 + 5];
+        int pos = 0;
+        out[pos++] = FORMAT_VERSION;
+        pos = writeBytes(out, pos, userId);
+        pos = writeBytes(out, pos, username);
+        pos = writeBytes(out, pos, email);
+        pos = writeVarLong(out, pos, profile.getLastLoginTime());
+        pos = writeVarLong(out, pos, profile.getVersion() & 0xFFFFFFFFL);
+        return pos == out.length ? out : Arrays.copyOf(out, pos);
+    }
+
+    @Override
+    public UserProfile decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("not a binary profile (format " + (bytes.length == 0 ? "empty" : bytes[0]) + ")");
+        }
+        Reader in = new Reader(bytes, 1);
+        String userId = in.string();
+        String username = in.string();
+        String email = in.string();
+        long lastLoginTime = in.varLong();
+        int version = (int) in.varLong();
+        return new UserProfile(userId, username, email, lastLoginTime, version);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static int writeBytes(byte[] out, int pos, byte[] value) {
+        if (value == null) {
+            return writeVarLong(out, pos, 0);
+        }
+        pos = writeVarLong(out, pos, value.length + 1L);
+        System.arraycopy(value, 0, out, pos, value.length);
+        return pos + value.length;
+    }
+
+    // unsigned LEB128: 7 bits per byte, high bit set on all but the last
+    private static int writeVarLong(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int pos;
+
+        Reader(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        long varLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= bytes.length) {
+                    throw new IllegalArgumentException("truncated binary profile");
+                }
+                byte b = bytes[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint in binary profile");
+        }
+
+        String string() {
+            long length = varLong();
+            if (length == 0) {
+                return null;
+            }
+            int size = (int) (length - 1);
+            if (size < 0 || pos + size > bytes.length) {
+                throw new IllegalArgumentException("truncated binary profile");
+            }
+            String value = new String(bytes, pos, size, StandardCharsets.UTF_8);
+            pos += size;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.peng.sms.codec;
+
+import com.google.gson.Gson;
+import com.peng.sms.part_a.UserProfile;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The original JSON text format, readable from redis-cli. One {@link Gson} is shared: it is
+ * thread-safe, and building one per call re-reflects the class every time.
+ */
+public final class JsonProfileCodec implements UserProfileCodec {
+
+    public static final JsonProfileCodec INSTANCE = new JsonProfileCodec();
+
+    private static final Gson GSON = new Gson();
+
+    private JsonProfileCodec() {
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(UserProfile profile) {
+        return toJson(profile).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public UserProfile decode(byte[] bytes) {
+        return fromJson(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public String toJson(UserProfile profile) {
+        return GSON.toJson(profile);
+    }
+
+    public UserProfile fromJson(String json) {
+        return GSON.fromJson(json, UserProfile.class);
+    }
+}
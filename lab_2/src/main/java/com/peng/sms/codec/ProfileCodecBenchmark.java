@@ -0,0 +1,99 @@
+package com.peng.sms.codec;
+
+import com.google.gson.Gson;
+import com.peng.sms.part_a.UserProfile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode throughput of each {@link UserProfile} format, against the old
+ * {@code new Gson()} per call. {@link #main} first prints the stored size of one record per format.
+ * <pre>
+ * mvn compile
+ * mvn exec:java -Dexec.mainClass=com.peng.sms.codec.ProfileCodecBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProfileCodecBenchmark {
+
+    UserProfile profile;
+    byte[] json;
+    byte[] binary;
+    Map<String, String> hash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        profile = sample();
+        json = JsonProfileCodec.INSTANCE.encode(profile);
+        binary = BinaryProfileCodec.INSTANCE.encode(profile);
+        hash = ProfileHashLayout.toHash(profile);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonNewGsonPerCall() {
+        return new Gson().toJson(profile).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return JsonProfileCodec.INSTANCE.encode(profile);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return BinaryProfileCodec.INSTANCE.encode(profile);
+    }
+
+    @Benchmark
+    public Map<String, String> encodeHash() {
+        return ProfileHashLayout.toHash(profile);
+    }
+
+    @Benchmark
+    public UserProfile decodeJsonNewGsonPerCall() {
+        return new Gson().fromJson(new String(json, StandardCharsets.UTF_8), UserProfile.class);
+    }
+
+    @Benchmark
+    public UserProfile decodeJson() {
+        return JsonProfileCodec.INSTANCE.decode(json);
+    }
+
+    @Benchmark
+    public UserProfile decodeBinary() {
+        return BinaryProfileCodec.INSTANCE.decode(binary);
+    }
+
+    @Benchmark
+    public UserProfile decodeHash() {
+        return ProfileHashLayout.fromHash(hash);
+    }
+
+    static UserProfile sample() {
+        return new UserProfile("user000123", "alice_smith", "alice.smith@example.com", 1_731_000_000_000L, 7);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        UserProfile profile = sample();
+        int hashBytes = 0;
+        for (Map.Entry<String, String> field : ProfileHashLayout.toHash(profile).entrySet()) {
+            hashBytes += field.getKey().length() + field.getValue().length();
+        }
+        System.out.println("bytes per record:");
+        System.out.println("  json    " + JsonProfileCodec.INSTANCE.encode(profile).length);
+        System.out.println("  binary  " + BinaryProfileCodec.INSTANCE.encode(profile).length);
+        System.out.println("  hash    " + hashBytes + " (field names + values)");
+        new Runner(new OptionsBuilder().include(ProfileCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
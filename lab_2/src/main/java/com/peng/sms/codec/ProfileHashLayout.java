@@ -0,0 +1,58 @@
+package com.peng.sms.codec;
+
+import com.peng.sms.part_a.UserProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores a profile as a Redis hash, one field per attribute, so a single attribute can be read
+ * with HGET or changed with HSET / HINCRBY without rewriting the whole value:
+ * <pre>
+ * HSET user:u1 id u1 username alice email a@x t 1700000000000 v 3
+ * HSET user:u1 t 1700000005000     (login touched, nothing else rewritten)
+ * HINCRBY user:u1 v 1
+ * </pre>
+ * Small hashes are kept as a listpack by Redis, so the layout costs little memory over a string.
+ */
+public final class ProfileHashLayout {
+
+    public static final String USER_ID = "id";
+    public static final String USERNAME = "username";
+    public static final String EMAIL = "email";
+    public static final String LAST_LOGIN_TIME = "t";
+    public static final String VERSION = "v";
+
+    private ProfileHashLayout() {
+    }
+
+    public static Map<String, String> toHash(UserProfile profile) {
+        Map<String, String> fields = new HashMap<>(8);
+        putIfPresent(fields, USER_ID, profile.getUserId());
+        putIfPresent(fields, USERNAME, profile.getUsername());
+        putIfPresent(fields, EMAIL, profile.getEmail());
+        fields.put(LAST_LOGIN_TIME, Long.toString(profile.getLastLoginTime()));
+        fields.put(VERSION, Integer.toString(profile.getVersion()));
+        return fields;
+    }
+
+    // null for an empty hash, which is what HGETALL returns for a missing key
+    public static UserProfile fromHash(Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        return new UserProfile(
+                fields.get(USER_ID),
+                fields.get(USERNAME),
+                fields.get(EMAIL),
+                Long.parseLong(fields.getOrDefault(LAST_LOGIN_TIME, "0")),
+                Integer.parseInt(fields.getOrDefault(VERSION, "1")));
+    }
+
+    private static void putIfPresent(Map<String, String> fields, String field, String value) {
+        // Redis hashes cannot hold null values
+        if (value != null) {
+            fields.put(field, value);
+        }
+    }
+}
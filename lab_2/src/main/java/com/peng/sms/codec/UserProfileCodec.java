@@ -0,0 +1,30 @@
+package com.peng.sms.codec;
+
+import com.peng.sms.part_a.UserProfile;
+
+/**
+ * Turns a {@link UserProfile} into the bytes stored in Redis and back. Implementations are
+ * stateless and thread-safe, so one instance serves every caller.
+ */
+public interface UserProfileCodec {
+
+    String name();
+
+    byte[] encode(UserProfile profile);
+
+    UserProfile decode(byte[] bytes);
+
+    /**
+     * {@code json} or {@code binary}.
+     */
+    static UserProfileCodec forName(String name) {
+        switch (name) {
+            case "json":
+                return JsonProfileCodec.INSTANCE;
+            case "binary":
+                return BinaryProfileCodec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("unknown codec: " + name);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.peng.sms.part_a;
 
+import com.peng.sms.cluster.BulkLoadReport;
+import com.peng.sms.cluster.ClusterBulkLoader;
 import redis.clients.jedis.*;
 import redis.clients.jedis.util.JedisClusterCRC16;
 import java.util.*;
@@ -141,15 +143,21 @@ public class PartA_ClusterSetup {
 
             System.out.println("Inserting " + users.length + " user profiles into the cluster...\n");
 
+            // one pipeline per owning master instead of one round trip per key
+            BulkLoadReport report = new ClusterBulkLoader(jedisCluster).loadProfiles(Arrays.asList(users).iterator());
+
             for (UserProfile user : users) {
                 String key = "user:" + user.getUserId();
-                jedisCluster.set(key, user.toJson());
-
                 int slot = JedisClusterCRC16.getSlot(key);
                 System.out.println("  ✓ " + key + " → slot " + slot + " | username: " + user.getUsername());
             }
 
-            System.out.println("\n✓ All user data inserted successfully.");
+            System.out.println("\n" + report);
+            if (report.failed() == 0) {
+                System.out.println("✓ All user data inserted successfully.");
+            } else {
+                System.out.println("✗ " + report.failed() + " profiles could not be written.");
+            }
 
         } catch (Exception e) {
             System.err.println("✗ Error initializing data: " + e.getMessage());
@@ -1,6 +1,6 @@
 package com.peng.sms.part_a;
 
-import com.google.gson.Gson;
+import com.peng.sms.codec.JsonProfileCodec;
 
 import java.time.Instant;
 
@@ -19,6 +19,15 @@ public class UserProfile {
         this.version = 1;
     }
 
+    // Restores a stored profile as-is, for the codecs in com.peng.sms.codec
+    public UserProfile(String userId, String username, String email, long lastLoginTime, int version) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.lastLoginTime = lastLoginTime;
+        this.version = version;
+    }
+
     // Getters and Setters
     public String getUserId() {
         return userId;
@@ -59,14 +68,14 @@ public class UserProfile {
         return version;
     }
 
-    // Serialize to JSON
+    // Serialize to JSON (one shared Gson, see JsonProfileCodec)
     public String toJson() {
-        return new Gson().toJson(this);
+        return JsonProfileCodec.INSTANCE.toJson(this);
     }
 
     // Deserialize from JSON
     public static UserProfile fromJson(String json) {
-        return new Gson().fromJson(json, UserProfile.class);
+        return JsonProfileCodec.INSTANCE.fromJson(json);
     }
 
     @Override
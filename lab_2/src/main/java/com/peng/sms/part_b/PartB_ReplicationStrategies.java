@@ -1,10 +1,14 @@
 package com.peng.sms.part_b;
 
+import com.peng.sms.cluster.DurableClusterWriter;
+import com.peng.sms.cluster.PartialWriteException;
+import com.peng.sms.cluster.WriteConcern;
 import com.peng.sms.part_a.UserProfile;
 import redis.clients.jedis.*;
 
 import java.util.*;
 import java.text.DecimalFormat;
+import java.time.Duration;
 
 /**
  * Part B: Replication Strategies
@@ -58,12 +62,16 @@ public class PartB_ReplicationStrategies {
         nodes.add(new HostAndPort("localhost", 7004));
         nodes.add(new HostAndPort("localhost", 7005));
         nodes.add(new HostAndPort("localhost", 7006));
-        try (JedisCluster jedis = new JedisCluster(nodes)) {
+        try (JedisCluster jedis = new JedisCluster(nodes);
+             DurableClusterWriter writer = new DurableClusterWriter(jedis, Duration.ofSeconds(1), false)) {
+
+            // Real WAIT on each write's master connection
+            testWriteConcernLevel(writer, "ONE (Async - Default)", WriteConcern.ONE);
+            testWriteConcernLevel(writer, "QUORUM (Majority of copies)", WriteConcern.QUORUM);
+            testWriteConcernLevel(writer, "ALL (Wait for all replicas)", WriteConcern.ALL);
 
-            // Simulate different write concern levels
-            testWriteConcernLevel(jedis, "ONE (Async - Default)", 0, 0);
-            testWriteConcernLevel(jedis, "QUORUM (Wait for 1 replica)", 1, 1000);
-            testWriteConcernLevel(jedis, "ALL (Wait for all replicas)", 2, 2000);
+            // Same guarantee, one WAIT per master for the whole batch
+            testBatchedWriteConcern(writer, WriteConcern.ALL);
 
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
@@ -72,12 +80,13 @@ public class PartB_ReplicationStrategies {
         }
     }
 
-    private void testWriteConcernLevel(JedisCluster jedis, String levelName, int replicas, int timeout) {
+    private void testWriteConcernLevel(DurableClusterWriter writer, String levelName, WriteConcern concern) {
         System.out.println("--- Testing Write Concern: " + levelName + " ---");
 
         List<Long> latencies = new ArrayList<>();
         int operations = 50;
         int successCount = 0;
+        int replicas = 0;
 
         for (int i = 0; i < operations; i++) {
             try {
@@ -87,23 +96,18 @@ public class PartB_ReplicationStrategies {
                         "user" + i + "@test.com"
                 );
 
-                String key = "user:wc:" + replicas + ":" + i;
-
-                long start = System.nanoTime();
-                jedis.set(key, user.toJson());
+                String key = "user:wc:" + concern.name().toLowerCase() + ":" + i;
 
-                // Simulate WAIT for replication (Redis WAIT command)
-                // Note: JedisCluster doesn't directly support WAIT, so this is conceptual
-                if (replicas > 0) {
-                    // In production, you would use: jedis.waitReplicas(replicas, timeout)
-                    // For demonstration, we add simulated delay
-                    Thread.sleep(replicas * 2); // Simulate replication time
+                // SET then WAIT numreplicas on the same master connection
+                DurableClusterWriter.Ack ack = writer.set(key, user.toJson(), concern);
+                replicas = ack.required();
+                latencies.add((long) ack.latencyMillis());
+                if (ack.satisfied()) {
+                    successCount++;
+                } else {
+                    System.err.println("  ✗ Operation " + i + ": " + ack.acked() + "/" + ack.required() + " replicas before timeout");
                 }
 
-                long latency = (System.nanoTime() - start) / 1_000_000;
-                latencies.add(latency);
-                successCount++;
-
             } catch (Exception e) {
                 System.err.println("  ✗ Operation " + i + " failed: " + e.getMessage());
             }
@@ -129,11 +133,11 @@ public class PartB_ReplicationStrategies {
 
             // Analysis
             System.out.println("\n🔍 Analysis:");
-            if (replicas == 0) {
+            if (concern == WriteConcern.ONE) {
                 System.out.println("  • FASTEST write performance (no waiting)");
                 System.out.println("  • Data loss risk if master fails before replication");
                 System.out.println("  • Best for: Caching, session storage, non-critical data");
-            } else if (replicas == 1) {
+            } else if (concern == WriteConcern.QUORUM) {
                 System.out.println("  • BALANCED trade-off between speed and safety");
                 System.out.println("  • Data survives 1 node failure");
                 System.out.println("  • Best for: Most applications, general use cases");
@@ -153,6 +157,49 @@ public class PartB_ReplicationStrategies {
         System.out.println();
     }
 
+    /**
+     * Writes the same 50 profiles in one batch: one pipeline and one WAIT per master cover all of them
+     */
+    private void testBatchedWriteConcern(DurableClusterWriter writer, WriteConcern concern) {
+        System.out.println("--- Testing Batched Write Concern: " + concern + " ---");
+
+        int operations = 50;
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < operations; i++) {
+            UserProfile user = new UserProfile("wc_batch_user" + i, "testuser" + i, "user" + i + "@test.com");
+            batch.put("user:wc:batch:" + i, user.toJson());
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<DurableClusterWriter.Ack> acks = writer.setAll(batch, concern);
+            double totalMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+            for (DurableClusterWriter.Ack ack : acks) {
+                System.out.println("  " + ack.master() + ": " + ack.keys() + " keys, "
+                        + ack.acked() + "/" + ack.required() + " replicas, " + df.format(ack.latencyMillis()) + " ms");
+            }
+            boolean satisfied = acks.stream().allMatch(DurableClusterWriter.Ack::satisfied);
+            System.out.println("\n📊 Results for batched " + concern + ":");
+            System.out.println("  Operations: " + operations + " in " + acks.size() + " WAITs");
+            System.out.println("  Total time: " + df.format(totalMillis) + " ms (" + df.format(totalMillis / operations) + " ms per write)");
+            System.out.println("  All replicas acknowledged: " + (satisfied ? "yes" : "no"));
+
+            observations.add(String.format(
+                    "**Batched %s**: %d writes in %.2f ms (%.2f ms per write) with one WAIT per master.",
+                    concern, operations, totalMillis, totalMillis / operations));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PartialWriteException e) {
+            System.err.println("  ✗ Batch partly written: " + e.writtenKeys().size() + " stored, "
+                    + e.failures().size() + " not (" + e.getMessage() + ")");
+        } catch (Exception e) {
+            System.err.println("  ✗ Batch failed: " + e.getMessage());
+        }
+
+        System.out.println();
+    }
+
     /**
      * Test 2: Leader-Follower Model
      * Requirement: Demonstrate writes to primary and reads from followers
@@ -1,5 +1,7 @@
 package com.peng.sms.part_c;
 
+import com.peng.sms.cluster.ProfileNearCache;
+import com.peng.sms.cluster.ReplicaReadRouter;
 import com.peng.sms.part_a.UserProfile;
 import redis.clients.jedis.*;
 import java.util.*;
@@ -38,6 +40,9 @@ public class PartC_ConsistencyModels {
 
         // Test 4: Causal Consistency (using versioning)
         testCausalConsistency();
+
+        // Test 5: Near cache kept coherent by server-assisted invalidation
+        testNearCache();
     }
     
     /**
@@ -111,17 +116,24 @@ public class PartC_ConsistencyModels {
     
     /**
      * Test 2: Eventual Consistency
-     * Write without waiting, demonstrate stale reads
+     * Write without waiting, then read through a router that spreads reads over the replicas
+     * but only uses a replica while its replication lag is within a staleness bound
      */
     private void testEventualConsistency() {
         System.out.println("\n═══ Test 2: Eventual Consistency ═══\n");
-        
-        try (Jedis primary = new Jedis(REDIS_HOST, PRIMARY_PORT);
-             Jedis replica = new Jedis(REDIS_HOST, REPLICA1_PORT)) {
-            
-            System.out.println("Configuration: Write without WAIT + Immediate read from replica");
-            System.out.println("This simulates ONE/eventual consistency in other systems\n");
-            
+
+        Set<HostAndPort> nodes = new HashSet<>();
+        for (int port = 7001; port <= 7006; port++) {
+            nodes.add(new HostAndPort(REDIS_HOST, port));
+        }
+
+        try (JedisCluster cluster = new JedisCluster(nodes);
+             ReplicaReadRouter router = new ReplicaReadRouter(cluster)) {
+
+            System.out.println("Configuration: Write without WAIT + reads routed to replicas (READONLY)");
+            System.out.println("Staleness bound: " + ReplicaReadRouter.DEFAULT_MAX_LAG_BYTES + " bytes / "
+                    + ReplicaReadRouter.DEFAULT_MAX_STALENESS.toMillis() + " ms behind the master\n");
+
             // Create test data
             String key = "data_for_7005";
             UserProfile user = new UserProfile(
@@ -129,56 +141,57 @@ public class PartC_ConsistencyModels {
                 "eventual_user_v1",
                 "eventual@test.com"
             );
-            
+
             System.out.println("Step 1: Write to primary WITHOUT waiting");
             long writeStart = System.nanoTime();
-            primary.set(key, user.toJson());
+            cluster.set(key, user.toJson());
             long writeTime = (System.nanoTime() - writeStart) / 1_000_000;
             System.out.println("  ✓ Write completed: " + writeTime + " ms (very fast!)");
-            
-            System.out.println("\nStep 2: IMMEDIATELY read from replica (no delay)");
-            replica.readonly();
-            String replicaData1 = replica.get(key);
-            
-            if (replicaData1 == null) {
-                System.out.println("  ⚠ Data NOT YET visible on replica (stale read!)");
+
+            System.out.println("\nStep 2: IMMEDIATELY read through the router (no delay)");
+            String firstRead = router.get(key);
+            if (firstRead == null) {
+                System.out.println("  ⚠ Data NOT YET visible on the replica read (stale read!)");
                 System.out.println("  This demonstrates EVENTUAL consistency");
             } else {
-                System.out.println("  ✓ Data visible (replication was very fast)");
+                System.out.println("  ✓ Data visible (replication was very fast, or the read went to the master)");
             }
-            
-            // Demonstrate eventual convergence
-            System.out.println("\nStep 3: Polling until data appears (demonstrating 'eventual')");
-            int attempts = 0;
-            long convergenceStart = System.currentTimeMillis();
-            boolean found = false;
-            
-            while (attempts < 10 && !found) {
-                Thread.sleep(10); // 10ms between checks
-                String checkData = replica.get(key);
-                attempts++;
-                
-                if (checkData != null) {
-                    long convergenceTime = System.currentTimeMillis() - convergenceStart;
-                    System.out.println("  ✓ Data appeared after " + convergenceTime + " ms");
-                    System.out.println("  ✓ Number of attempts: " + attempts);
-                    UserProfile readUser = UserProfile.fromJson(checkData);
-                    System.out.println("  ✓ Data: " + readUser.getUsername());
-                    found = true;
+
+            // Spread a read load over every node and see where it went
+            System.out.println("\nStep 3: 1000 reads of 30 fresh keys, spread across masters and replicas");
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                keys.add("eventual:" + i);
+                cluster.set(keys.get(i), user.toJson());
+            }
+            int reads = 1000;
+            int stale = 0;
+            for (int i = 0; i < reads; i++) {
+                UserProfile readUser = router.getProfile(keys.get(i % keys.size()));
+                if (readUser == null || !user.getUsername().equals(readUser.getUsername())) {
+                    stale++;
                 }
             }
-            
-            if (!found) {
-                System.out.println("  ⚠ Data still not visible after " + (attempts * 10) + " ms");
+            router.readsByNode().forEach((node, count) ->
+                    System.out.println("  " + node + " served " + count + " reads"));
+            System.out.println("  Stale reads: " + stale + ", replica reads abandoned for the master: " + router.fallbacks());
+
+            System.out.println("\nReplica lag as last polled:");
+            long worstLagMillis = 0;
+            for (ReplicaReadRouter.ReplicaState state : router.replicaStates()) {
+                System.out.println("  " + state.replica() + " (of " + state.master() + "): "
+                        + state.lagBytes() + " bytes, " + state.stalenessMillis() + " ms behind, "
+                        + (state.eligible() ? "serving reads" : "skipped"));
+                worstLagMillis = Math.max(worstLagMillis, state.stalenessMillis());
             }
-            
+
             System.out.println("\nAnalysis:");
             System.out.println("  Write Latency: " + writeTime + " ms (LOW)");
-            System.out.println("  Consistency Model: EVENTUAL");
+            System.out.println("  Consistency Model: EVENTUAL, with bounded staleness on reads");
             System.out.println("  CAP Trade-off: Chose Availability + Partition Tolerance");
-            System.out.println("  Benefit: Very fast writes, high availability");
-            System.out.println("  Cost: Temporary inconsistency, stale reads possible");
-            
+            System.out.println("  Benefit: Very fast writes, read load shared by all six nodes");
+            System.out.println("  Cost: Temporary inconsistency, stale reads possible within the bound");
+
             System.out.println("\nWhen to use Eventual Consistency:");
             System.out.println("  ✓ Social media likes/views (exactness not critical)");
             System.out.println("  ✓ Sensor data collection (volume > precision)");
@@ -186,20 +199,21 @@ public class PartC_ConsistencyModels {
             System.out.println("  ✓ Content delivery (CDN caching)");
             System.out.println("  ✗ Financial transactions (NOT suitable)");
             System.out.println("  ✗ Inventory management (NOT suitable)");
-            
+
             observations.add(String.format(
-                "**Eventual Consistency**: Fast writes (%.2f ms) without waiting. " +
-                "Brief inconsistency window (~10-50ms). CAP: AP - prioritizes availability. " +
-                "Suitable for non-critical data where speed matters more than immediate consistency.",
-                writeTime));
-            
+                "**Eventual Consistency**: Fast writes (%d ms) without waiting. Reads spread over %d nodes, " +
+                "%d of %d stale; replicas were at most %d ms behind and are skipped beyond %d ms. " +
+                "CAP: AP - prioritizes availability.",
+                writeTime, router.readsByNode().size(), stale, reads, worstLagMillis,
+                ReplicaReadRouter.DEFAULT_MAX_STALENESS.toMillis()));
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
         }
-        
+
         System.out.println();
     }
-    
+
     /**
      * Test 3: CAP Theorem Demonstration
      * Simulate network partition and observe behavior
@@ -354,6 +368,83 @@ public class PartC_ConsistencyModels {
         System.out.println();
     }
     
+    /**
+     * Test 5: Client-side caching
+     * Repeated reads of the same keys served from an in-process LRU, invalidated by the cluster
+     */
+    private void testNearCache() {
+        System.out.println("\n═══ Test 5: Near Cache with Server-Assisted Invalidation ═══\n");
+
+        Set<HostAndPort> nodes = new HashSet<>();
+        for (int port = 7001; port <= 7006; port++) {
+            nodes.add(new HostAndPort(REDIS_HOST, port));
+        }
+        String[] keys = {"user:near:001", "user:near:002"};
+        int reads = 2000;
+
+        // only keys under the prefix are announced, so unrelated writes never reach this client
+        try (JedisCluster cluster = new JedisCluster(nodes);
+             ProfileNearCache cache = new ProfileNearCache(cluster, 10_000, "user:near:")) {
+
+            for (String key : keys) {
+                cluster.set(key, new UserProfile("near_" + key, "near_user", "near@test.com").toJson());
+            }
+
+            // Baseline: every read crosses the network
+            long start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                UserProfile.fromJson(cluster.get(keys[i % keys.length]));
+            }
+            double remoteMicros = (System.nanoTime() - start) / 1000.0 / reads;
+
+            // Near cache: the first read of each key misses, the rest are local
+            start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                cache.get(keys[i % keys.length]);
+            }
+            double cachedMicros = (System.nanoTime() - start) / 1000.0 / reads;
+
+            System.out.println("Reads: " + reads + " over " + keys.length + " keys");
+            System.out.println("  Remote read:  " + String.format("%.1f", remoteMicros) + " µs avg");
+            System.out.println("  Cached read:  " + String.format("%.1f", cachedMicros) + " µs avg");
+            System.out.println("  Hit ratio:    " + String.format("%.1f%%", cache.hitRatio() * 100));
+            System.out.println("  Reduction:    " + String.format("%.0fx", remoteMicros / Math.max(cachedMicros, 0.001)));
+
+            // Another client changes a key: the owning master pushes an invalidation
+            System.out.println("\nAnother client updates " + keys[1] + " ...");
+            UserProfile updated = new UserProfile("near_" + keys[1], "near_user_v2", "near2@test.com");
+            long invalidations = cache.invalidations();
+            cluster.set(keys[1], updated.toJson());
+            long writeTime = System.nanoTime();
+            while (cache.invalidations() == invalidations && System.nanoTime() - writeTime < 1_000_000_000L) {
+                Thread.onSpinWait();
+            }
+            double invalidationMillis = (System.nanoTime() - writeTime) / 1_000_000.0;
+            UserProfile seen = cache.get(keys[1]);
+            String username = seen == null ? null : seen.getUsername();
+            if (cache.invalidations() == invalidations) {
+                System.err.println("  ✗ No invalidation received within 1 s; the cached copy may be stale");
+                observations.add("**Near Cache**: no invalidation arrived within 1 s of a remote update, " +
+                        "so the cache could have served stale data.");
+            } else if (!updated.getUsername().equals(username)) {
+                System.err.println("  ✗ Next read returns username='" + username + "', expected '" + updated.getUsername() + "'");
+                observations.add("**Near Cache**: the read after an invalidation still returned the old profile.");
+            } else {
+                System.out.println("  ✓ Invalidation received after " + String.format("%.2f", invalidationMillis) + " ms");
+                System.out.println("  ✓ Next read returns username='" + username + "'");
+                observations.add(String.format(
+                        "**Near Cache**: %.1f%% hit ratio, reads %.1f µs → %.1f µs. CLIENT TRACKING (BCAST) " +
+                        "invalidated a remote update after %.2f ms, so staleness is bounded by push latency.",
+                        cache.hitRatio() * 100, remoteMicros, cachedMicros, invalidationMillis));
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+
+        System.out.println();
+    }
+
     private void printObservations() {
         System.out.println("\n╔════════════════════════════════════════════════════╗");
         System.out.println("║           Part C: Key Observations                ║");
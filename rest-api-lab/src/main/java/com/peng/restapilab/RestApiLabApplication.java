@@ -1,10 +1,13 @@
 package com.peng.restapilab;
 
+import com.peng.restapilab.client.UserApiClient;
+import com.peng.restapilab.client.UserApiClientConfig;
 import com.peng.restapilab.model.User;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
-import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
 
 
 @SpringBootApplication
@@ -12,13 +15,20 @@ public class RestApiLabApplication {
     public static void main(String[] args) {
 
         ConfigurableApplicationContext context = SpringApplication.run(RestApiLabApplication.class, args);
+        // --rest-api-lab.serve=true keeps the server up instead of running the demo call and exiting
+        if (context.getEnvironment().getProperty("rest-api-lab.serve", Boolean.class, false)) {
+            return;
+        }
         System.out.println("--------------------------------------- the rest-api-lab start ---------------------------------------");
         long start = System.currentTimeMillis();
-        RestTemplate restTemplate = new RestTemplate();
-        String url = "http://localhost:19002/api/users";
-        User[] users = restTemplate.getForObject(url, User[].class);
-        long end = System.currentTimeMillis();
-        System.out.println("rest-api-lab: the time is " + (end - start));
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port", "19002");
+        try (UserApiClient client = new UserApiClient(UserApiClientConfig.builder().baseUrl(baseUrl).build())) {
+            List<User> users = client.getUsers();
+            long end = System.currentTimeMillis();
+            System.out.println("rest-api-lab: the time is " + (end - start) + ", users: " + users.size());
+        } catch (Exception e) {
+            System.out.println("rest-api-lab: call failed: " + e.getMessage());
+        }
         System.out.println("--------------------------------------- the rest-api-lab end ---------------------------------------");
         SpringApplication.exit(context, () -> 0);
     }
@@ -1,23 +1,94 @@
 package com.peng.restapilab.client;
 
 import com.peng.restapilab.model.User;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Calls a running rest-api-lab through {@link UserApiClient}.
+ * <pre>
+ * RestClientSpring [baseUrl]                                  one GET /api/users, timed
+ * RestClientSpring bench [baseUrl] [threads] [seconds]        fan-out benchmark
+ * </pre>
+ * The benchmark keeps {@code threads} callers looping on {@code GET /api/users/{id}} and repeats the
+ * run with a new connection per call, the pooled HTTP/1.1 client and the HTTP/2 client, printing
+ * calls/s, mean latency and how many connections the pool ended up holding.
+ */
 public class RestClientSpring {
-    public static void main(String[] args) {
+
+    private static final String USER_ID = "20253000";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("bench")) {
+            String baseUrl = args.length > 1 ? args[1] : UserApiClientConfig.DEFAULT_BASE_URL;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+            int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+            bench(baseUrl, threads, seconds);
+            return;
+        }
+
+        String baseUrl = args.length > 0 ? args[0] : UserApiClientConfig.DEFAULT_BASE_URL;
         long start = System.currentTimeMillis();
+        try (UserApiClient client = new UserApiClient(UserApiClientConfig.builder().baseUrl(baseUrl).build())) {
+            List<User> userList = client.getUsers();
+            long end = System.currentTimeMillis();
+            System.out.println("the time is " + (end - start) + ", users: " + userList.size());
+        }
+    }
 
-        RestTemplate restTemplate = new RestTemplate();
-        String url = "http://localhost:19001/api/users";
+    private static void bench(String baseUrl, int threads, int seconds) throws Exception {
+        System.out.println("baseUrl=" + baseUrl + " threads=" + threads + " seconds=" + seconds);
+        System.out.printf("%-14s %12s %10s %8s %12s%n", "client", "calls/s", "mean ms", "errors", "connections");
+        UserApiClientConfig.Builder base = UserApiClientConfig.builder().baseUrl(baseUrl).pool(Math.max(threads, 50), Math.max(threads, 50));
+        run("no-keepalive", base.keepAlive(false).protocol(UserApiClientConfig.Protocol.HTTP_1_1).build(), threads, seconds);
+        run("pooled-http1", base.keepAlive(true).protocol(UserApiClientConfig.Protocol.HTTP_1_1).build(), threads, seconds);
+        run("http2", base.keepAlive(true).protocol(UserApiClientConfig.Protocol.HTTP_2).build(), threads, seconds);
+    }
 
-        User[] users = restTemplate.getForObject(url, User[].class);
-        List<User> userList = Arrays.asList(users);
+    private static void run(String name, UserApiClientConfig config, int threads, int seconds) throws Exception {
+        LongAdder calls = new LongAdder();
+        LongAdder errors = new LongAdder();
+        AtomicLong totalNanos = new AtomicLong();
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
 
-        long end = System.currentTimeMillis();
-        System.out.println("the time is " + (end - start));
-//        userList.forEach(user -> System.out.println(user));
+        try (UserApiClient client = new UserApiClient(config)) {
+            try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < threads; i++) {
+                    callers.submit(() -> {
+                        while (running.get()) {
+                            long start = System.nanoTime();
+                            try {
+                                client.getUser(USER_ID);
+                                if (measuring.get()) {
+                                    calls.increment();
+                                    totalNanos.addAndGet(System.nanoTime() - start);
+                                }
+                            } catch (RuntimeException e) {
+                                if (measuring.get()) {
+                                    errors.increment();
+                                }
+                            }
+                        }
+                    });
+                }
+                // warm up connections and the JIT first
+                Thread.sleep(Math.min(5, seconds) * 1000L);
+                measuring.set(true);
+                Thread.sleep(seconds * 1000L);
+                measuring.set(false);
+                running.set(false);
+            }
+            long total = calls.sum();
+            double meanMillis = total == 0 ? 0 : totalNanos.get() / (double) total / 1_000_000;
+            int connections = client.pooledConnections();
+            System.out.printf("%-14s %12.0f %10.2f %8d %12s%n", name, total / (double) seconds, meanMillis, errors.sum(),
+                    connections < 0 ? "1 (h2)" : String.valueOf(connections));
+        }
     }
 }
@@ -0,0 +1,245 @@
+package com.peng.restapilab.client;
+
+import com.peng.restapilab.model.BatchResult;
+import com.peng.restapilab.model.User;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Long-lived client for the {@code /api/users} endpoints. One instance owns one connection pool,
+ * so calls from any number of threads reuse warm keep-alive connections instead of paying a TCP
+ * handshake each: HTTP/1.1 through a pooled Apache HttpClient capped per route, or HTTP/2 through
+ * the JDK client, which multiplexes every call over one connection. Responses are requested gzip
+ * compressed and decompressed transparently. Create once, share, and close on shutdown.
+ */
+public class UserApiClient implements AutoCloseable {
+
+    private final UserApiClientConfig config;
+    private final RestTemplate restTemplate;
+    // null in HTTP/2 mode
+    private final PoolingHttpClientConnectionManager pool;
+    private final AutoCloseable transport;
+    // HTTP/2 only: set once the plain-text connection has been upgraded to h2c
+    private final AtomicBoolean upgraded = new AtomicBoolean();
+    private final LongAdder gzipResponses = new LongAdder();
+
+    public UserApiClient() {
+        this(UserApiClientConfig.defaults());
+    }
+
+    public UserApiClient(UserApiClientConfig config) {
+        this.config = config;
+        ClientHttpRequestFactory requestFactory;
+        if (config.protocol() == UserApiClientConfig.Protocol.HTTP_2) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(config.connectTimeout())
+                    .build();
+            JdkClientHttpRequestFactory jdk = new JdkClientHttpRequestFactory(http);
+            jdk.setReadTimeout(config.responseTimeout());
+            requestFactory = jdk;
+            this.pool = null;
+            this.transport = http;
+        } else {
+            this.pool = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(config.maxTotal())
+                    .setMaxConnPerRoute(config.maxPerRoute())
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(config.connectTimeout()))
+                            .setSocketTimeout(Timeout.of(config.responseTimeout()))
+                            // re-check a connection that sat idle before reusing it, not on every lease
+                            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                            .build())
+                    .build();
+            HttpClientBuilder builder = HttpClients.custom()
+                    .setConnectionManager(pool)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setResponseTimeout(Timeout.of(config.responseTimeout()))
+                            .build())
+                    .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                    .evictIdleConnections(TimeValue.of(config.idleTimeout()))
+                    .setConnectionReuseStrategy(config.keepAlive()
+                            ? DefaultConnectionReuseStrategy.INSTANCE
+                            : (request, response, context) -> false);
+            // HttpClient sends Accept-Encoding and decompresses by itself unless told not to
+            if (!config.compression()) {
+                builder.disableContentCompression();
+            }
+            // runs on the wire response, before HttpClient strips Content-Encoding while decoding it
+            builder.addResponseInterceptorFirst((response, entity, context) -> {
+                Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+                if (encoding != null && "gzip".equalsIgnoreCase(encoding.getValue())) {
+                    gzipResponses.increment();
+                }
+            });
+            CloseableHttpClient http = builder.build();
+            requestFactory = new HttpComponentsClientHttpRequestFactory(http);
+            this.transport = http;
+        }
+        this.restTemplate = new RestTemplate(requestFactory);
+        if (config.protocol() == UserApiClientConfig.Protocol.HTTP_2 && config.compression()) {
+            restTemplate.getInterceptors().add(new GzipInterceptor());
+        }
+    }
+
+    public UserApiClientConfig config() {
+        return config;
+    }
+
+    /**
+     * The underlying template, for endpoints without a method here. Shares this client's pool.
+     */
+    public RestTemplate restTemplate() {
+        return restTemplate;
+    }
+
+    public List<User> getUsers() {
+        User[] users = restTemplate.getForObject(url("/api/users"), User[].class);
+        return users == null ? List.of() : Arrays.asList(users);
+    }
+
+    // null when there is no such user
+    public User getUser(String id) {
+        return restTemplate.getForObject(url("/api/users/{id}"), User.class, id);
+    }
+
+    public boolean createUser(User user) {
+        upgrade();
+        return Boolean.TRUE.equals(restTemplate.postForObject(url("/api/users"), user, Boolean.class));
+    }
+
+    public BatchResult createUsers(List<User> users) {
+        upgrade();
+        return restTemplate.exchange(url("/api/users/batch"), HttpMethod.POST, new HttpEntity<>(users),
+                new ParameterizedTypeReference<BatchResult>() {
+                }).getBody();
+    }
+
+    /**
+     * Connections currently held by the HTTP/1.1 pool, leased plus idle; -1 in HTTP/2 mode.
+     */
+    public int pooledConnections() {
+        if (pool == null) {
+            return -1;
+        }
+        return pool.getTotalStats().getLeased() + pool.getTotalStats().getAvailable();
+    }
+
+    /**
+     * Responses that arrived gzip encoded and were decoded before being read.
+     */
+    public long gzipResponses() {
+        return gzipResponses.sum();
+    }
+
+    @Override
+    public void close() throws Exception {
+        transport.close();
+    }
+
+    /**
+     * Opens the h2c connection with a bodiless request. Tomcat only buffers a small body while
+     * upgrading and answers 413 otherwise, so the first call must not be a large POST.
+     */
+    private void upgrade() {
+        if (config.protocol() == UserApiClientConfig.Protocol.HTTP_2 && !upgraded.get()) {
+            restTemplate.optionsForAllow(url("/api/users"));
+            upgraded.set(true);
+        }
+    }
+
+    private String url(String path) {
+        return config.baseUrl() + path;
+    }
+
+    // the JDK client neither asks for nor decodes gzip, so both are done here
+    private class GzipInterceptor implements ClientHttpRequestInterceptor {
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            ClientHttpResponse response = execution.execute(request, body);
+            if (!"gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+                return response;
+            }
+            gzipResponses.increment();
+            return new GunzippedResponse(response);
+        }
+    }
+
+    private static class GunzippedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        GunzippedResponse(ClientHttpResponse response) {
+            this.response = response;
+            // the decoded body no longer matches the wire length or encoding
+            this.headers = new HttpHeaders();
+            this.headers.putAll(response.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new GZIPInputStream(response.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.peng.restapilab.client;
+
+import java.time.Duration;
+
+/**
+ * Connection settings for {@link UserApiClient}. Built with {@link #builder()}; the defaults suit a
+ * single long-lived client shared by every thread of the process.
+ */
+public class UserApiClientConfig {
+
+    public enum Protocol {
+        // pooled keep-alive HTTP/1.1 connections (Apache HttpClient 5)
+        HTTP_1_1,
+        // multiplexed HTTP/2 over one connection per host (JDK HttpClient, h2c upgrade on plain HTTP)
+        HTTP_2
+    }
+
+    public static final String DEFAULT_BASE_URL = "http://localhost:19002";
+
+    private final String baseUrl;
+    private final Protocol protocol;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final Duration connectTimeout;
+    private final Duration responseTimeout;
+    private final Duration idleTimeout;
+    private final boolean keepAlive;
+    private final boolean compression;
+
+    private UserApiClientConfig(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.protocol = builder.protocol;
+        this.maxTotal = builder.maxTotal;
+        this.maxPerRoute = builder.maxPerRoute;
+        this.connectTimeout = builder.connectTimeout;
+        this.responseTimeout = builder.responseTimeout;
+        this.idleTimeout = builder.idleTimeout;
+        this.keepAlive = builder.keepAlive;
+        this.compression = builder.compression;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static UserApiClientConfig defaults() {
+        return builder().build();
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public Protocol protocol() {
+        return protocol;
+    }
+
+    // pool limits apply to HTTP/1.1; HTTP/2 multiplexes every call over one connection
+    public int maxTotal() {
+        return maxTotal;
+    }
+
+    public int maxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration responseTimeout() {
+        return responseTimeout;
+    }
+
+    // pooled connections idle for longer are closed before the server drops them
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+
+    // false closes every connection after one call; only useful as a baseline
+    public boolean keepAlive() {
+        return keepAlive;
+    }
+
+    // Accept-Encoding: gzip, with transparent decompression
+    public boolean compression() {
+        return compression;
+    }
+
+    @Override
+    public String toString() {
+        return "baseUrl=" + baseUrl
+                + ", protocol=" + protocol
+                + ", maxTotal=" + maxTotal
+                + ", maxPerRoute=" + maxPerRoute
+                + ", keepAlive=" + keepAlive
+                + ", compression=" + compression;
+    }
+
+    public static class Builder {
+        private String baseUrl = DEFAULT_BASE_URL;
+        private Protocol protocol = Protocol.HTTP_1_1;
+        private int maxTotal = 200;
+        private int maxPerRoute = 50;
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(10);
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private boolean keepAlive = true;
+        private boolean compression = true;
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        public Builder protocol(Protocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        public Builder pool(int maxTotal, int maxPerRoute) {
+            this.maxTotal = maxTotal;
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        public Builder timeouts(Duration connectTimeout, Duration responseTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.responseTimeout = responseTimeout;
+            return this;
+        }
+
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder keepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public UserApiClientConfig build() {
+            if (maxPerRoute <= 0 || maxTotal < maxPerRoute) {
+                throw new IllegalArgumentException("pool needs 0 < maxPerRoute <= maxTotal");
+            }
+            return new UserApiClientConfig(this);
+        }
+    }
+}
@@ -1,27 +1,116 @@
 package com.peng.restapilab.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peng.restapilab.model.BatchResult;
 import com.peng.restapilab.model.User;
+import com.peng.restapilab.model.UserPage;
 import com.peng.restapilab.services.APIServices;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class APIController {
 
+    static final String NDJSON = "application/x-ndjson";
+    static final int MAX_PAGE_SIZE = 1000;
+    // caps the work a single batch call does; checked once the body has been bound
+    static final int MAX_BATCH_SIZE = 10_000;
+    // bounds the request body a batch call holds in memory, checked before binding by BatchBodyLimitFilter
+    static final int MAX_BATCH_BODY_BYTES = 4 * 1024 * 1024;
+    // users written between explicit flushes of a streamed response
+    private static final int STREAM_FLUSH_EVERY = 256;
+
     @Autowired
     private APIServices userService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // a null return after checkNotModified() sends the 304 without building or serializing a body
     @GetMapping
-    public List<User> getUsers() {
+    public List<User> getUsers(WebRequest request) {
+        if (request.checkNotModified(collectionEtag(userService.getUsersVersion()))) {
+            return null;
+        }
         return userService.getAllUsers();
     }
 
+    @GetMapping(params = "limit")
+    public UserPage getUsersPage(@RequestParam int limit, @RequestParam(required = false) String cursor, WebRequest request) {
+        if (request.checkNotModified(collectionEtag(userService.getUsersVersion()))) {
+            return null;
+        }
+        return userService.getUsersPage(cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
+    // one JSON object per line, written while the store is walked
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsersNdjson() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                int[] written = new int[1];
+                userService.streamUsers(user -> {
+                    try {
+                        generator.writeObject(user);
+                        generator.writeRaw('\n');
+                        flushEvery(generator, ++written[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    // the same body as GET /api/users, but written element by element instead of from a full list
+    @GetMapping(value = "/stream", params = "format=array")
+    public ResponseEntity<StreamingResponseBody> streamUsersArray() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                int[] written = new int[1];
+                userService.streamUsers(user -> {
+                    try {
+                        generator.writeObject(user);
+                        flushEvery(generator, ++written[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(params = "name")
+    public List<User> getUsersByName(@RequestParam String name) {
+        return userService.getUsersByName(name);
+    }
+
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable String id) {
-        return userService.getUserById(id);
+    public User getUserById(@PathVariable String id, WebRequest request) {
+        User user = userService.getUserById(id);
+        if (user != null && request.checkNotModified(userEtag(user))) {
+            return null;
+        }
+        return user;
     }
 
     @PostMapping
@@ -38,4 +127,46 @@ public class APIController {
     public boolean deleteUser(@PathVariable String id) {
         return userService.deleteUser(id);
     }
+
+    @PostMapping("/batch")
+    public BatchResult createUsers(@RequestBody List<User> users) {
+        checkBatchSize(users);
+        return userService.createUsers(users);
+    }
+
+    @PutMapping("/batch")
+    public BatchResult updateUsers(@RequestBody List<User> users) {
+        checkBatchSize(users);
+        return userService.updateUsers(users);
+    }
+
+    @DeleteMapping("/batch")
+    public BatchResult deleteUsers(@RequestBody List<String> ids) {
+        checkBatchSize(ids);
+        return userService.deleteUsers(ids);
+    }
+
+    static void checkBatchSize(List<?> items) {
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "at most " + MAX_BATCH_SIZE + " items per batch");
+        }
+    }
+
+    // weak ETags from store versions: "c<version>" for listings, "u<version>" for one user.
+    // Weak because the same version is sent gzip encoded or not, and Tomcat refuses to compress
+    // a response carrying a strong ETag
+    static String collectionEtag(long version) {
+        return "W/\"c" + version + "\"";
+    }
+
+    static String userEtag(User user) {
+        return "W/\"u" + user.getVersion() + "\"";
+    }
+
+    // pushes bytes to the client regularly so the first users arrive before the walk finishes
+    private static void flushEvery(JsonGenerator generator, int written) throws IOException {
+        if (written % STREAM_FLUSH_EVERY == 0) {
+            generator.flush();
+        }
+    }
 }
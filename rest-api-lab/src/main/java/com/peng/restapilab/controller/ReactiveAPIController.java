@@ -0,0 +1,125 @@
+package com.peng.restapilab.controller;
+
+import com.peng.restapilab.model.BatchResult;
+import com.peng.restapilab.model.User;
+import com.peng.restapilab.model.UserPage;
+import com.peng.restapilab.services.APIServices;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static com.peng.restapilab.controller.APIController.*;
+
+/**
+ * The {@link APIController} contract on WebFlux, active with the {@code reactive} profile.
+ * {@link APIServices} and {@code UserDao} block, so every call is handed to a scheduler backed by
+ * virtual threads and the Netty event loops are never held. Reactor's bounded-elastic scheduler
+ * would cap that at ten threads per core, i.e. {@code 10 * cores / latency} calls per second once
+ * the backend is slow; a non-blocking backend would let the handlers drop the hop altogether.
+ */
+@RestController
+@RequestMapping("/api/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAPIController {
+
+    @Autowired
+    private APIServices userService;
+
+    private final Scheduler blockingCalls = Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "user-dao");
+
+    @PreDestroy
+    public void close() {
+        blockingCalls.dispose();
+    }
+
+    @GetMapping
+    public Mono<List<User>> getUsers(ServerWebExchange exchange) {
+        return blocking(userService::getUsersVersion)
+                .filter(version -> !exchange.checkNotModified(collectionEtag(version)))
+                .flatMap(version -> blocking(userService::getAllUsers));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<UserPage> getUsersPage(@RequestParam int limit, @RequestParam(required = false) String cursor, ServerWebExchange exchange) {
+        return blocking(userService::getUsersVersion)
+                .filter(version -> !exchange.checkNotModified(collectionEtag(version)))
+                .flatMap(version -> blocking(() -> userService.getUsersPage(cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)))));
+    }
+
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public Flux<User> streamUsersNdjson() {
+        return streamUsers();
+    }
+
+    // Flux bodies are written element by element as a JSON array
+    @GetMapping(value = "/stream", params = "format=array", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<User> streamUsersArray() {
+        return streamUsers();
+    }
+
+    @GetMapping(params = "name")
+    public Mono<List<User>> getUsersByName(@RequestParam String name) {
+        return blocking(() -> userService.getUsersByName(name));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<User> getUserById(@PathVariable String id, ServerWebExchange exchange) {
+        return blocking(() -> userService.getUserById(id))
+                .filter(user -> !exchange.checkNotModified(userEtag(user)));
+    }
+
+    @PostMapping
+    public Mono<Boolean> createUser(@RequestBody User user) {
+        return blocking(() -> userService.createUser(user));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<User> updateUser(@PathVariable String id, @RequestBody User user) {
+        return blocking(() -> userService.updateUser(id, user));
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public Mono<Boolean> deleteUser(@PathVariable String id) {
+        return blocking(() -> userService.deleteUser(id));
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchResult> createUsers(@RequestBody List<User> users) {
+        checkBatchSize(users);
+        return blocking(() -> userService.createUsers(users));
+    }
+
+    @PutMapping("/batch")
+    public Mono<BatchResult> updateUsers(@RequestBody List<User> users) {
+        checkBatchSize(users);
+        return blocking(() -> userService.updateUsers(users));
+    }
+
+    @DeleteMapping("/batch")
+    public Mono<BatchResult> deleteUsers(@RequestBody List<String> ids) {
+        checkBatchSize(ids);
+        return blocking(() -> userService.deleteUsers(ids));
+    }
+
+    // pulled on demand, so a slow client holds back the walk instead of buffering the store
+    private Flux<User> streamUsers() {
+        return Flux.using(userService::userStream, Flux::fromStream, Stream::close)
+                .subscribeOn(blockingCalls);
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(blockingCalls);
+    }
+}
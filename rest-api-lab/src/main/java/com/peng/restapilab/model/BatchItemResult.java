@@ -0,0 +1,23 @@
+package com.peng.restapilab.model;
+
+/**
+ * Outcome of one item of a batch request, in the same position as the item.
+ */
+public record BatchItemResult(String id, Status status) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        // create of an id that is already taken
+        EXISTS,
+        // update or delete of an unknown id
+        NOT_FOUND,
+        // missing user or id
+        INVALID
+    }
+
+    public boolean applied() {
+        return status == Status.CREATED || status == Status.UPDATED || status == Status.DELETED;
+    }
+}
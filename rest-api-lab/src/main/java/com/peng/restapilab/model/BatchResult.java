@@ -0,0 +1,19 @@
+package com.peng.restapilab.model;
+
+import java.util.List;
+
+/**
+ * Response of the {@code /api/users/batch} endpoints: how many items were applied and the result of each.
+ */
+public record BatchResult(int applied, int failed, List<BatchItemResult> items) {
+
+    public static BatchResult of(List<BatchItemResult> items) {
+        int applied = 0;
+        for (BatchItemResult item : items) {
+            if (item.applied()) {
+                applied++;
+            }
+        }
+        return new BatchResult(applied, items.size() - applied, items);
+    }
+}
@@ -1,15 +1,29 @@
 package com.peng.restapilab.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class User {
     private String id;
     private String name;
     private String password;
+    // store version of this copy, set by UserDao on write and used as its ETag
+    private long version;
 
     public User(String id, String name, String password) {
         this.id = id;
         this.name = name;
     }
 
+    /**
+     * A detached copy, so a stored user never shares an instance with the caller that wrote it.
+     */
+    public User copy() {
+        User copy = new User(id, name, password);
+        copy.setPassword(password);
+        copy.setVersion(version);
+        return copy;
+    }
+
     public String getName() {
         return name;
     }
@@ -33,4 +47,13 @@ public class User {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,10 @@
+package com.peng.restapilab.model;
+
+import java.util.List;
+
+/**
+ * One page of {@code GET /api/users?limit=}. Pass {@code nextCursor} as {@code cursor} to get the
+ * next page; it is null on the last page.
+ */
+public record UserPage(List<User> users, String nextCursor) {
+}
@@ -1,51 +1,288 @@
 package com.peng.restapilab.resposity;
 
 
+import com.peng.restapilab.model.BatchItemResult;
 import com.peng.restapilab.model.User;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Thread-safe user store. Users are kept in a {@link ConcurrentHashMap} keyed by id, with a
+ * secondary index from name to ids. Every write goes through a single per-id {@code compute},
+ * so concurrent writes to the same id are serialized while writes to different ids run in parallel.
+ * Writes store a copy of the caller's user, so later changes to that object cannot bypass the index.
+ * A sorted set of ids gives pages and streams a stable order without copying the whole store.
+ * Two counters give ETags without a body hash: every stored user carries a fresh stamp from
+ * {@code userVersions} as its own version, and {@code version} versions the collection. The
+ * collection version is bumped only after a write has returned from its {@code compute}, so
+ * a reader that sees a version also sees every write that version counts.
+ * {@code userdao.latency-ms} makes every call sleep first, standing in for a remote database when
+ * comparing serving modes.
+ */
 @Component
 public class UserDao {
-    static List<User> users;
 
-    static {
-        users = new ArrayList<>();
+    private final ConcurrentMap<String, User> usersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> idsByName = new ConcurrentHashMap<>();
+    private final NavigableSet<String> orderedIds = new ConcurrentSkipListSet<>();
+    // collection version, published after each write is visible
+    private final AtomicLong version = new AtomicLong();
+    // source of per-user versions, taken inside the write's compute
+    private final AtomicLong userVersions = new AtomicLong();
+    private long latencyMillis;
+
+    public UserDao() {
         Random random = new Random();
         for (int i = 0; i < 10; i++) {
             String id = "2025" + String.format("%04d", 3000 + i); // generator 20253000
             String username = "user" + i;
             String firstName = "Name" + random.nextInt(1000); // create randomly name
-            users.add(new User(id, username, firstName));
+            insert(new User(id, username, firstName));
         }
     }
 
+    @Value("${userdao.latency-ms:0}")
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
     public List<User> getAllUsers() {
-        return users;
+        return streamUsers().toList();
+    }
+
+    /**
+     * Up to {@code limit} users in id order, starting after {@code cursor} (from the beginning when null).
+     */
+    public List<User> getUsersAfter(String cursor, int limit) {
+        simulateLatency();
+        List<User> page = new ArrayList<>(limit);
+        Iterator<String> ids = (cursor == null ? orderedIds : orderedIds.tailSet(cursor, false)).iterator();
+        while (page.size() < limit && ids.hasNext()) {
+            User user = usersById.get(ids.next());
+            // deleted between reading the index and the map
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Visits every user in id order without materializing a list. Weakly consistent: users added
+     * or removed during the walk may or may not be seen.
+     */
+    public void forEachUser(Consumer<User> action) {
+        streamUsers().forEach(action);
+    }
+
+    /**
+     * Lazy, weakly consistent stream of every user in id order, for consumers that pull.
+     */
+    public Stream<User> streamUsers() {
+        simulateLatency();
+        return orderedIds.stream().map(usersById::get).filter(Objects::nonNull);
     }
 
     public User getUserById(String id) {
-        for (User user : users) {
-            if (id.equals(user.getId())) {
-                return user;
+        simulateLatency();
+        return id == null ? null : usersById.get(id);
+    }
+
+    public List<User> getUsersByName(String name) {
+        simulateLatency();
+        Set<String> ids = idsByName.get(name);
+        if (ids == null) {
+            return List.of();
+        }
+        List<User> users = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            User user = usersById.get(id);
+            // skip ids removed or renamed since the index was read
+            if (user != null && Objects.equals(name, user.getName())) {
+                users.add(user);
             }
         }
-        return null;
+        return users;
+    }
+
+    /**
+     * Version of the whole collection. Read it before reading users, so a concurrent write can
+     * only make the data newer than the version, never older.
+     */
+    public long getVersion() {
+        return version.get();
     }
 
+    public int size() {
+        return usersById.size();
+    }
+
+    /**
+     * @return false when the user has no id or the id is already taken
+     */
     public boolean addUser(User user) {
-        return users.add(user);
+        simulateLatency();
+        return insert(user);
+    }
+
+    private boolean insert(User user) {
+        if (user == null || user.getId() == null) {
+            return false;
+        }
+        boolean[] added = new boolean[1];
+        usersById.compute(user.getId(), (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            User stored = user.copy();
+            stored.setVersion(userVersions.incrementAndGet());
+            index(stored);
+            orderedIds.add(id);
+            added[0] = true;
+            return stored;
+        });
+        if (added[0]) {
+            version.incrementAndGet();
+        }
+        return added[0];
     }
 
+    /**
+     * Replaces the user stored under {@code id} with a copy of {@code user}; the copy always keeps
+     * {@code id}, and {@code user} itself is left unchanged.
+     *
+     * @return the stored user, or null when there is no user with that id
+     */
     public User updateUser(String id, User user) {
-        User userById = getUserById(id);
-        users.set(users.indexOf(userById), user);
-        return users.set(users.indexOf(userById), user);
+        simulateLatency();
+        return replace(id, user);
+    }
+
+    private User replace(String id, User user) {
+        if (id == null || user == null) {
+            return null;
+        }
+        User stored = usersById.computeIfPresent(id, (key, existing) -> {
+            unindex(existing);
+            User copy = user.copy();
+            copy.setId(key);
+            copy.setVersion(userVersions.incrementAndGet());
+            index(copy);
+            return copy;
+        });
+        if (stored != null) {
+            version.incrementAndGet();
+        }
+        return stored;
     }
 
     public boolean deleteUser(String id) {
-        User userById = getUserById(id);
-        return users.remove(userById);
+        simulateLatency();
+        return remove(id);
+    }
+
+    private boolean remove(String id) {
+        if (id == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        usersById.computeIfPresent(id, (key, existing) -> {
+            unindex(existing);
+            orderedIds.remove(key);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            version.incrementAndGet();
+        }
+        return removed[0];
+    }
+
+    /**
+     * Creates every user in one pass over the list; items succeed or fail independently.
+     */
+    public List<BatchItemResult> addUsers(List<User> users) {
+        simulateLatency();
+        List<BatchItemResult> results = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (user == null || user.getId() == null) {
+                results.add(new BatchItemResult(user == null ? null : user.getId(), BatchItemResult.Status.INVALID));
+            } else {
+                results.add(new BatchItemResult(user.getId(), insert(user) ? BatchItemResult.Status.CREATED : BatchItemResult.Status.EXISTS));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Replaces every user under its own id; unknown ids are reported, not created.
+     */
+    public List<BatchItemResult> updateUsers(List<User> users) {
+        simulateLatency();
+        List<BatchItemResult> results = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (user == null || user.getId() == null) {
+                results.add(new BatchItemResult(user == null ? null : user.getId(), BatchItemResult.Status.INVALID));
+            } else {
+                results.add(new BatchItemResult(user.getId(), replace(user.getId(), user) != null ? BatchItemResult.Status.UPDATED : BatchItemResult.Status.NOT_FOUND));
+            }
+        }
+        return results;
+    }
+
+    public List<BatchItemResult> deleteUsers(List<String> ids) {
+        simulateLatency();
+        List<BatchItemResult> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (id == null) {
+                results.add(new BatchItemResult(null, BatchItemResult.Status.INVALID));
+            } else {
+                results.add(new BatchItemResult(id, remove(id) ? BatchItemResult.Status.DELETED : BatchItemResult.Status.NOT_FOUND));
+            }
+        }
+        return results;
+    }
+
+    // one simulated backend round trip per call, batches included
+    private void simulateLatency() {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // called inside the compute of the user's id, so index updates for one id never interleave.
+    // The add happens inside the name's compute too: an unindex of another user with the same
+    // name may drop an emptied set, and an add outside would land in that detached set
+    private void index(User user) {
+        if (user.getName() != null) {
+            idsByName.compute(user.getName(), (name, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                }
+                ids.add(user.getId());
+                return ids;
+            });
+        }
+    }
+
+    private void unindex(User user) {
+        if (user.getName() != null) {
+            idsByName.computeIfPresent(user.getName(), (name, ids) -> {
+                ids.remove(user.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
     }
 }
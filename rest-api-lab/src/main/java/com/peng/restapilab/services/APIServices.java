@@ -1,11 +1,15 @@
 package com.peng.restapilab.services;
 
+import com.peng.restapilab.model.BatchResult;
 import com.peng.restapilab.model.User;
+import com.peng.restapilab.model.UserPage;
 import com.peng.restapilab.resposity.UserDao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class APIServices {
@@ -20,16 +24,63 @@ public class APIServices {
         return userDao.getAllUsers();
     }
 
+    public long getUsersVersion() {
+        return userDao.getVersion();
+    }
+
+    public UserPage getUsersPage(String cursor, int limit) {
+        log.info("Get users after: {}, limit: {}", cursor, limit);
+        List<User> users = userDao.getUsersAfter(cursor, limit);
+        // a short page is the last one
+        String nextCursor = users.size() < limit ? null : users.get(users.size() - 1).getId();
+        return new UserPage(users, nextCursor);
+    }
+
+    public void streamUsers(Consumer<User> action) {
+        log.info("Stream all users");
+        userDao.forEachUser(action);
+    }
+
+    // pull-based variant of streamUsers for the reactive controller; close the stream when done
+    public Stream<User> userStream() {
+        log.info("Stream all users");
+        return userDao.streamUsers();
+    }
+
     public User getUserById(String id) {
         log.info("Get user by id: {}", id);
         return userDao.getUserById(id);
     }
 
+    public List<User> getUsersByName(String name) {
+        log.info("Get users by name: {}", name);
+        return userDao.getUsersByName(name);
+    }
+
     public boolean createUser(User user) {
         log.info("Create user: {}", user);
         return userDao.addUser(user);
     }
 
+    // one log line per batch, not per user
+    public BatchResult createUsers(List<User> users) {
+        BatchResult result = BatchResult.of(userDao.addUsers(users));
+        log.info("Create users: {} applied, {} failed", result.applied(), result.failed());
+        return result;
+    }
+
+    public BatchResult updateUsers(List<User> users) {
+        BatchResult result = BatchResult.of(userDao.updateUsers(users));
+        log.info("Update users: {} applied, {} failed", result.applied(), result.failed());
+        return result;
+    }
+
+    public BatchResult deleteUsers(List<String> ids) {
+        BatchResult result = BatchResult.of(userDao.deleteUsers(ids));
+        log.info("Delete users: {} applied, {} failed", result.applied(), result.failed());
+        return result;
+    }
+
     public User updateUser(String id, User user) {
         log.info("Update user: {}", user);
         return userDao.updateUser(id, user);
@@ -0,0 +1,115 @@
+package com.peng.restapilab;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts the application once per serving mode with {@code userdao.latency-ms} set, keeps
+ * {@code clients} virtual-thread clients each looping on {@code GET /api/users/{id}}, and prints
+ * requests/s, mean latency and errors. With a blocking backend the platform-thread mode is capped
+ * at about {@code 200 / latency} requests/s by Tomcat's pool; the virtual and reactive modes are
+ * not, and stay bound by connections and CPU.
+ * <pre>
+ * mvn test-compile
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.peng.restapilab.ServingModeBenchmark \
+ *     -Dexec.args="platform,virtual,reactive 10000 50 20"
+ * </pre>
+ * Arguments: modes, clients, latency-ms, seconds per mode. Each client holds one connection, so
+ * raise {@code ulimit -n} above twice the client count when running client and server in one JVM.
+ */
+public class ServingModeBenchmark {
+
+    private static final int PORT = 19102;
+    private static final String USER_ID = "20253000";
+
+    public static void main(String[] args) throws Exception {
+        // devtools would restart this main in its own class loader on every application start
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        String[] modes = args.length > 0 ? args[0].split(",") : new String[]{"platform", "virtual", "reactive"};
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        System.out.println("clients=" + clients + " latency-ms=" + latencyMillis + " seconds=" + seconds + " modes=" + Arrays.toString(modes));
+        System.out.printf("%-10s %12s %14s %10s%n", "mode", "requests/s", "mean ms", "errors");
+        for (String mode : modes) {
+            ConfigurableApplicationContext context = start(mode.trim(), latencyMillis);
+            try {
+                run(mode.trim(), clients, seconds);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, int latencyMillis) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(RestApiLabApplication.class);
+        if (!mode.equals("platform")) {
+            builder.profiles(mode);
+        }
+        // arguments, not default properties, so they override application.properties
+        return builder.run("--server.port=" + PORT, "--userdao.latency-ms=" + latencyMillis, "--logging.level.root=WARN");
+    }
+
+    private static void run(String mode, int clients, int seconds) throws InterruptedException {
+        URI uri = URI.create("http://localhost:" + PORT + "/api/users/" + USER_ID);
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        AtomicLong totalNanos = new AtomicLong();
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        // one HttpClient per client: the JDK client would otherwise multiplex them over a small pool
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                threads.submit(() -> {
+                    HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Runnable::run).build();
+                    HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).build();
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (!measuring.get()) {
+                                continue;
+                            }
+                            if (response.statusCode() == 200) {
+                                completed.increment();
+                                totalNanos.addAndGet(System.nanoTime() - start);
+                            } else {
+                                errors.increment();
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (Exception e) {
+                            if (measuring.get()) {
+                                errors.increment();
+                            }
+                        }
+                    }
+                });
+            }
+            // let every client connect and the JIT settle before counting
+            Thread.sleep(Math.min(10, seconds / 2 + 1) * 1000L);
+            measuring.set(true);
+            Thread.sleep(seconds * 1000L);
+            measuring.set(false);
+            running.set(false);
+        }
+
+        long requests = completed.sum();
+        double meanMillis = requests == 0 ? 0 : totalNanos.get() / (double) requests / 1_000_000;
+        System.out.printf("%-10s %12.0f %14.1f %10d%n", mode, requests / (double) seconds, meanMillis, errors.sum());
+    }
+}
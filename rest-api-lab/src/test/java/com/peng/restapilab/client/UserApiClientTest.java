@@ -0,0 +1,73 @@
+package com.peng.restapilab.client;
+
+import com.peng.restapilab.model.BatchResult;
+import com.peng.restapilab.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserApiClientTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void testPooledHttp1ReusesConnections() throws Exception {
+        UserApiClientConfig config = UserApiClientConfig.builder().baseUrl("http://localhost:" + port).pool(8, 4).build();
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try (UserApiClient client = new UserApiClient(config)) {
+            List<Future<User>> calls = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                calls.add(callers.submit(() -> client.getUser("20253000")));
+            }
+            for (Future<User> call : calls) {
+                assertEquals("user0", call.get().getName());
+            }
+            // 200 calls from 16 threads, never more than maxPerRoute connections
+            int connections = client.pooledConnections();
+            assertTrue(connections >= 1 && connections <= 4, "connections: " + connections);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompressedResponsesOverBothProtocols() throws Exception {
+        for (UserApiClientConfig.Protocol protocol : UserApiClientConfig.Protocol.values()) {
+            UserApiClientConfig config = UserApiClientConfig.builder()
+                    .baseUrl("http://localhost:" + port)
+                    .protocol(protocol)
+                    .build();
+            try (UserApiClient client = new UserApiClient(config)) {
+                List<User> users = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    users.add(new User(protocol + "-" + i, "bulk", "p"));
+                }
+                BatchResult created = client.createUsers(users);
+                assertEquals(500, created.applied());
+
+                // well above the server's 2KB compression threshold, so it must arrive gzip encoded
+                long compressed = client.gzipResponses();
+                List<User> all = client.getUsers();
+                assertTrue(all.stream().anyMatch(user -> user.getId().equals(protocol + "-499")), protocol.name());
+                assertEquals(compressed + 1, client.gzipResponses(), protocol.name());
+                assertNull(client.getUser("missing"));
+                assertEquals(protocol == UserApiClientConfig.Protocol.HTTP_2 ? -1 : 1, client.pooledConnections());
+            }
+        }
+    }
+
+    @Test
+    public void testPoolLimitsValidated() {
+        assertThrows(IllegalArgumentException.class, () -> UserApiClientConfig.builder().pool(4, 8).build());
+    }
+}
@@ -1,6 +1,9 @@
 package com.peng.restapilab.controller;
 
+import com.peng.restapilab.model.BatchItemResult;
+import com.peng.restapilab.model.BatchResult;
 import com.peng.restapilab.model.User;
+import com.peng.restapilab.model.UserPage;
 import com.peng.restapilab.services.APIServices;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -10,10 +13,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -57,6 +64,90 @@ class APIControllerTest {
                 .andExpect(jsonPath("$.name").value("wupeng"));
     }
 
+    @Test
+    public void testGetUsersByName() throws Exception {
+        when(userService.getUsersByName("wupeng")).thenReturn(List.of(new User("2025123", "wupeng", "pengwu")));
+
+        mockMvc.perform(get("/api/users").param("name", "wupeng"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(1))
+                .andExpect(jsonPath("$[0].id").value("2025123"));
+    }
+
+    @Test
+    public void testConditionalGet() throws Exception {
+        User user = new User("2025123", "wupeng", "pengwu");
+        user.setVersion(7);
+        when(userService.getUserById("2025123")).thenReturn(user);
+        when(userService.getUsersVersion()).thenReturn(42L);
+
+        mockMvc.perform(get("/api/users/2025123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"u7\""));
+        mockMvc.perform(get("/api/users/2025123").header("If-None-Match", "W/\"u7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"c42\""));
+        mockMvc.perform(get("/api/users").header("If-None-Match", "W/\"c42\""))
+                .andExpect(status().isNotModified());
+        // the list is not even built for a 304
+        verify(userService, times(1)).getAllUsers();
+
+        when(userService.getUsersVersion()).thenReturn(43L);
+        mockMvc.perform(get("/api/users").header("If-None-Match", "W/\"c42\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"c43\""));
+    }
+
+    @Test
+    public void testGetUsersPage() throws Exception {
+        when(userService.getUsersPage(null, 2)).thenReturn(new UserPage(List.of(
+                new User("2025123", "wupeng", "pengwu"),
+                new User("2025124", "max", "max")), "2025124"));
+
+        mockMvc.perform(get("/api/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.size()").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("2025124"));
+
+        // oversized pages are capped
+        when(userService.getUsersPage("2025124", APIController.MAX_PAGE_SIZE)).thenReturn(new UserPage(List.of(), null));
+        mockMvc.perform(get("/api/users").param("limit", "100000").param("cursor", "2025124"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.size()").value(0));
+    }
+
+    @Test
+    public void testStreamUsers() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<User> action = invocation.getArgument(0);
+            action.accept(new User("2025123", "wupeng", "pengwu"));
+            action.accept(new User("2025124", "max", "max"));
+            return null;
+        }).when(userService).streamUsers(Mockito.any());
+
+        MvcResult ndjson = mockMvc.perform(get("/api/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", APIController.NDJSON));
+        String[] lines = ndjson.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("2025124", objectMapper.readTree(lines[1]).get("id").asText());
+
+        MvcResult array = mockMvc.perform(get("/api/users/stream").param("format", "array"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(array))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[0].name").value("wupeng"));
+    }
+
     @Test
     public void testCreateUser() throws Exception {
         User user = new User("2025123", "wupeng", "pengwu");
@@ -69,6 +160,44 @@ class APIControllerTest {
                 .andExpect(content().string("true"));
     }
 
+    @Test
+    public void testBatchEndpoints() throws Exception {
+        List<User> users = List.of(new User("2025123", "wupeng", "pengwu"), new User("2025124", "max", "max"));
+        when(userService.createUsers(Mockito.anyList())).thenReturn(BatchResult.of(List.of(
+                new BatchItemResult("2025123", BatchItemResult.Status.CREATED),
+                new BatchItemResult("2025124", BatchItemResult.Status.EXISTS))));
+
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(users)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[1].status").value("EXISTS"));
+
+        when(userService.deleteUsers(List.of("2025123"))).thenReturn(BatchResult.of(List.of(
+                new BatchItemResult("2025123", BatchItemResult.Status.DELETED))));
+        mockMvc.perform(delete("/api/users/batch")
+                        .contentType("application/json")
+                        .content("[\"2025123\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status").value("DELETED"));
+
+        String tooMany = objectMapper.writeValueAsString(Collections.nCopies(APIController.MAX_BATCH_SIZE + 1, "x"));
+        mockMvc.perform(delete("/api/users/batch")
+                        .contentType("application/json")
+                        .content(tooMany))
+                .andExpect(status().isPayloadTooLarge());
+
+        // an oversized body is refused before it is bound
+        byte[] hugeBody = new byte[APIController.MAX_BATCH_BODY_BYTES + 1];
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType("application/json")
+                        .content(hugeBody))
+                .andExpect(status().isPayloadTooLarge());
+        Mockito.verify(userService, Mockito.times(1)).createUsers(Mockito.anyList());
+    }
+
     @Test
     public void testUpdateUser() throws Exception {
         User user = new User("2025123", "wupeng", "99988");
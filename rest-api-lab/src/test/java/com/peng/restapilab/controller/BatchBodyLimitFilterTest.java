@@ -0,0 +1,101 @@
+package com.peng.restapilab.controller;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchBodyLimitFilterTest {
+
+    private final BatchBodyLimitFilter filter = new BatchBodyLimitFilter();
+
+    @Test
+    public void testChunkedBodyOverLimit() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(chunked(new byte[APIController.MAX_BATCH_BODY_BYTES + 1]), response, chain);
+
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void testChunkedBodyUnderLimitIsReplayed() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        byte[] body = "[\"2025123\"]".getBytes();
+
+        filter.doFilter(chunked(body), new MockHttpServletResponse(), chain);
+
+        HttpServletRequest passed = (HttpServletRequest) chain.getRequest();
+        assertEquals(body.length, passed.getContentLengthLong());
+        assertArrayEquals(body, passed.getInputStream().readAllBytes());
+    }
+
+    @Test
+    public void testReplayedBodyServesReadListeners() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        byte[] body = "[\"2025123\"]".getBytes();
+        filter.doFilter(chunked(body), new MockHttpServletResponse(), chain);
+        ServletInputStream in = chain.getRequest().getInputStream();
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> events = new ArrayList<>();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add("available");
+                byte[] chunk = new byte[4];
+                while (in.isReady() && !in.isFinished()) {
+                    read.write(chunk, 0, in.read(chunk));
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("done");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+
+        assertEquals(List.of("available", "done"), events);
+        assertArrayEquals(body, read.toByteArray());
+    }
+
+    @Test
+    public void testOtherPathsAreNotRead() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = chunked(new byte[APIController.MAX_BATCH_BODY_BYTES + 1]);
+        request.setRequestURI("/api/users");
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertSame(request, chain.getRequest());
+    }
+
+    // a body sent without Content-Length
+    private static MockHttpServletRequest chunked(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users/batch") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContent(body);
+        return request;
+    }
+}
@@ -0,0 +1,91 @@
+package com.peng.restapilab.controller;
+
+import com.peng.restapilab.model.BatchResult;
+import com.peng.restapilab.model.User;
+import com.peng.restapilab.services.APIServices;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(ReactiveAPIController.class)
+class ReactiveAPIControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private APIServices userService;
+
+    @Test
+    public void testGetUserByIdWithEtag() {
+        User user = new User("2025123", "wupeng", "pengwu");
+        user.setVersion(4);
+        when(userService.getUserById("2025123")).thenReturn(user);
+
+        webTestClient.get().uri("/api/users/2025123").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "W/\"u4\"")
+                .expectBody().jsonPath("$.name").isEqualTo("wupeng");
+
+        webTestClient.get().uri("/api/users/2025123").header("If-None-Match", "W/\"u4\"").exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void testGetUserByIdNotFound() {
+        when(userService.getUserById("missing")).thenReturn(null);
+
+        webTestClient.get().uri("/api/users/missing").exchange()
+                .expectStatus().isOk()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void testStreamUsersNdjson() {
+        when(userService.userStream()).thenAnswer(invocation -> Stream.of(
+                new User("1", "a", "p"), new User("2", "b", "p")));
+
+        webTestClient.get().uri("/api/users/stream").accept(MediaType.parseMediaType(APIController.NDJSON)).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APIController.NDJSON)
+                .expectBodyList(User.class).hasSize(2);
+    }
+
+    @Test
+    public void testBatchTooLarge() {
+        List<String> ids = Collections.nCopies(APIController.MAX_BATCH_SIZE + 1, "x");
+
+        webTestClient.method(HttpMethod.DELETE).uri("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(ids).exchange()
+                .expectStatus().isEqualTo(413);
+        verify(userService, never()).deleteUsers(anyList());
+    }
+
+    @Test
+    public void testBatchBodyLimit() {
+        when(userService.deleteUsers(anyList())).thenReturn(BatchResult.of(List.of()));
+
+        // over the 256KB codec default, under the batch body limit
+        List<String> longIds = Collections.nCopies(5000, "x".repeat(200));
+        webTestClient.method(HttpMethod.DELETE).uri("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(longIds).exchange()
+                .expectStatus().isOk();
+
+        List<String> hugeIds = Collections.nCopies(30, "x".repeat(200_000));
+        webTestClient.method(HttpMethod.DELETE).uri("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(hugeIds).exchange()
+                .expectStatus().isEqualTo(413);
+        verify(userService, times(1)).deleteUsers(anyList());
+    }
+}
@@ -0,0 +1,87 @@
+package com.peng.restapilab.resposity;
+
+import com.peng.restapilab.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserDao} with a million users: id lookups, name-index lookups, updates, and a 90/10
+ * read/write mix. {@link #main} repeats the run at 1, 2, 4, ... threads up to the core count, so
+ * the ops/us column shows how each operation scales across cores.
+ * <pre>
+ * mvn test-compile
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.peng.restapilab.resposity.UserDaoBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class UserDaoBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int NAMES = 100_000;
+
+    UserDao userDao;
+
+    @Setup(Level.Trial)
+    public void load() {
+        userDao = new UserDao();
+        for (int i = 0; i < USERS; i++) {
+            userDao.addUser(new User(id(i), name(i), "secret"));
+        }
+    }
+
+    @Benchmark
+    public User getUserById() {
+        return userDao.getUserById(id(ThreadLocalRandom.current().nextInt(USERS)));
+    }
+
+    @Benchmark
+    public Object getUsersByName() {
+        return userDao.getUsersByName(name(ThreadLocalRandom.current().nextInt(NAMES)));
+    }
+
+    @Benchmark
+    public User updateUser() {
+        int i = ThreadLocalRandom.current().nextInt(USERS);
+        return userDao.updateUser(id(i), new User(id(i), name(i), "rotated"));
+    }
+
+    @Benchmark
+    public Object readMostly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(USERS);
+        if (random.nextInt(10) == 0) {
+            return userDao.updateUser(id(i), new User(id(i), name(i), "rotated"));
+        }
+        return userDao.getUserById(id(i));
+    }
+
+    private static String id(int i) {
+        return "u" + i;
+    }
+
+    // ten users share each name
+    private static String name(int i) {
+        return "name" + (i % NAMES);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            System.out.println("--------------------------------------- threads " + threads + " ---------------------------------------");
+            new Runner(new OptionsBuilder()
+                    .include(UserDaoBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.peng.restapilab.resposity;
+
+import com.peng.restapilab.model.BatchItemResult;
+import com.peng.restapilab.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDaoTest {
+
+    @Test
+    public void testSeedUsers() {
+        UserDao userDao = new UserDao();
+        assertEquals(10, userDao.getAllUsers().size());
+        assertEquals("user0", userDao.getUserById("20253000").getName());
+        assertNull(userDao.getUserById("missing"));
+    }
+
+    @Test
+    public void testUpdateUserKeepsIdAndIndex() {
+        UserDao userDao = new UserDao();
+        User updated = userDao.updateUser("20253001", new User("other", "renamed", "secret"));
+
+        assertEquals("20253001", updated.getId());
+        assertEquals("renamed", userDao.getUserById("20253001").getName());
+        assertNull(userDao.getUserById("other"));
+        assertTrue(userDao.getUsersByName("user1").isEmpty());
+        assertEquals(1, userDao.getUsersByName("renamed").size());
+        // unknown ids are not created by an update
+        assertNull(userDao.updateUser("missing", new User("missing", "ghost", "x")));
+        assertEquals(10, userDao.size());
+    }
+
+    @Test
+    public void testWritesStoreACopy() {
+        UserDao userDao = new UserDao();
+        User added = new User("c1", "original", "p");
+        userDao.addUser(added);
+        User replacement = new User("other", "replaced", "p");
+        userDao.updateUser("c1", replacement);
+
+        // the caller's objects are not adopted by the store
+        assertEquals("other", replacement.getId());
+        replacement.setName("mutated");
+        added.setName("mutated");
+        assertEquals("replaced", userDao.getUserById("c1").getName());
+        assertTrue(userDao.getUsersByName("mutated").isEmpty());
+        assertEquals(1, userDao.getUsersByName("replaced").size());
+    }
+
+    @Test
+    public void testVersionsAdvanceOnEveryWrite() {
+        UserDao userDao = new UserDao();
+        long seeded = userDao.getVersion();
+        assertEquals(10, seeded);
+
+        userDao.addUser(new User("v1", "versioned", "p"));
+        assertEquals(seeded + 1, userDao.getUserById("v1").getVersion());
+        userDao.updateUser("v1", new User("v1", "versioned", "q"));
+        assertEquals(seeded + 2, userDao.getUserById("v1").getVersion());
+        // other users keep their version
+        assertEquals(1, userDao.getUserById("20253000").getVersion());
+
+        userDao.deleteUser("v1");
+        assertEquals(seeded + 3, userDao.getVersion());
+        // failed writes change nothing
+        userDao.deleteUser("v1");
+        userDao.addUser(new User("20253000", "dup", "p"));
+        assertEquals(seeded + 3, userDao.getVersion());
+    }
+
+    @Test
+    public void testAddAndDelete() {
+        UserDao userDao = new UserDao();
+        assertTrue(userDao.addUser(new User("1", "twin", "a")));
+        assertTrue(userDao.addUser(new User("2", "twin", "b")));
+        assertFalse(userDao.addUser(new User("1", "duplicate", "c")));
+        assertEquals(2, userDao.getUsersByName("twin").size());
+
+        assertTrue(userDao.deleteUser("1"));
+        assertFalse(userDao.deleteUser("1"));
+        assertEquals(1, userDao.getUsersByName("twin").size());
+        assertEquals(11, userDao.size());
+    }
+
+    @Test
+    public void testPagesWalkEveryUserInIdOrder() {
+        UserDao userDao = new UserDao();
+        for (int i = 0; i < 95; i++) {
+            userDao.addUser(new User(String.format("u%03d", i), "n", "p"));
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        List<User> page;
+        do {
+            page = userDao.getUsersAfter(cursor, 20);
+            page.forEach(user -> seen.add(user.getId()));
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 20);
+
+        assertEquals(105, seen.size());
+        assertEquals(seen.stream().sorted().toList(), seen);
+
+        List<String> streamed = new ArrayList<>();
+        userDao.forEachUser(user -> streamed.add(user.getId()));
+        assertEquals(seen, streamed);
+    }
+
+    @Test
+    public void testBatchResultsPerItem() {
+        UserDao userDao = new UserDao();
+        List<BatchItemResult> created = userDao.addUsers(List.of(
+                new User("b1", "bulk", "p"), new User("20253000", "taken", "p"), new User(null, "no id", "p")));
+        assertEquals(List.of(BatchItemResult.Status.CREATED, BatchItemResult.Status.EXISTS, BatchItemResult.Status.INVALID),
+                created.stream().map(BatchItemResult::status).toList());
+
+        List<BatchItemResult> updated = userDao.updateUsers(List.of(new User("b1", "bulk2", "p"), new User("b2", "x", "p")));
+        assertEquals(BatchItemResult.Status.UPDATED, updated.get(0).status());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, updated.get(1).status());
+        assertEquals("bulk2", userDao.getUserById("b1").getName());
+
+        List<BatchItemResult> deleted = userDao.deleteUsers(List.of("b1", "b1"));
+        assertEquals(BatchItemResult.Status.DELETED, deleted.get(0).status());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, deleted.get(1).status());
+        assertEquals(10, userDao.size());
+    }
+
+    @Test
+    public void testVersionNeverRunsAheadOfData() throws Exception {
+        UserDao userDao = new UserDao();
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                done.add(writers.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        userDao.addUser(new User("w" + thread + "-" + i, "n", "p"));
+                    }
+                }));
+            }
+            // every add bumps the version once, so a listing read after version v holds at least v users
+            long reads = 0;
+            while (!done.stream().allMatch(Future::isDone) || reads == 0) {
+                long version = userDao.getVersion();
+                int listed = userDao.getAllUsers().size();
+                assertTrue(listed >= version, "version " + version + " served with " + listed + " users");
+                reads++;
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+        assertEquals(80_010, userDao.getVersion());
+    }
+
+    @Test
+    public void testNameIndexSurvivesConcurrentDeletesOfTheSameName() throws Exception {
+        UserDao userDao = new UserDao();
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            // the other writer keeps emptying the shared name's entry while this one adds to it
+            Future<Integer> keeper = writers.submit(() -> {
+                int lost = 0;
+                for (int i = 0; i < 50_000; i++) {
+                    String id = "keep-" + i;
+                    userDao.addUser(new User(id, "shared", "p"));
+                    if (userDao.getUsersByName("shared").stream().noneMatch(user -> user.getId().equals(id))) {
+                        lost++;
+                    }
+                    userDao.deleteUser(id);
+                }
+                return lost;
+            });
+            Future<?> churn = writers.submit(() -> {
+                for (int i = 0; !keeper.isDone(); i++) {
+                    userDao.addUser(new User("churn-" + i, "shared", "p"));
+                    userDao.deleteUser("churn-" + i);
+                }
+            });
+            assertEquals(0, keeper.get());
+            churn.get();
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        UserDao userDao = new UserDao();
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                done.add(writers.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        String id = thread + "-" + i;
+                        userDao.addUser(new User(id, "name" + (i % 10), "p"));
+                        userDao.updateUser(id, new User(id, "name" + (i % 7), "p"));
+                        if (i % 2 == 0) {
+                            userDao.deleteUser(id);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        assertEquals(10 + 8 * 2_500, userDao.size());
+        int indexed = 0;
+        for (int n = 0; n < 7; n++) {
+            indexed += userDao.getUsersByName("name" + n).size();
+        }
+        assertEquals(8 * 2_500, indexed);
+    }
+}
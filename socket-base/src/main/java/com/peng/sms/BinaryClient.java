@@ -0,0 +1,85 @@
+package com.peng.sms;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static com.peng.sms.BinaryFrameCodec.HEADER_BYTES;
+import static com.peng.sms.BinaryFrameCodec.MAX_FRAME_BYTES;
+import static com.peng.sms.CommonConstant.BINARY_MAGIC;
+
+/**
+ * Client for the length-prefixed binary protocol. Request and reply frames go
+ * through two direct buffers owned by the client and reused for every call.
+ * Not thread-safe.
+ */
+public class BinaryClient implements Closeable {
+
+    private final SocketChannel channel;
+    private ByteBuffer request = ByteBuffer.allocateDirect(8 * 1024);
+    private ByteBuffer reply = ByteBuffer.allocateDirect(8 * 1024);
+
+    public BinaryClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        this.channel.socket().setTcpNoDelay(true);
+        // - Announce the binary protocol once per connection
+        writeFully(ByteBuffer.wrap(new byte[]{BINARY_MAGIC}));
+    }
+
+    /**
+     * Sends {@code payload} as one frame and returns the reply payload. The returned
+     * buffer is a view of the client's reply buffer and is only valid until the next call.
+     */
+    public ByteBuffer send(ByteBuffer payload) throws IOException {
+        if (payload.remaining() > MAX_FRAME_BYTES) {
+            throw new IOException("Payload too large: " + payload.remaining());
+        }
+        if (request.capacity() < HEADER_BYTES + payload.remaining()) {
+            request = ByteBuffer.allocateDirect(HEADER_BYTES + payload.remaining());
+        }
+        request.clear();
+        BinaryFrameCodec.encode(payload, request);
+        writeFully(request.flip());
+
+        readFully(HEADER_BYTES);
+        int length = reply.getInt(0);
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        readFully(length);
+        return reply.flip().asReadOnlyBuffer();
+    }
+
+    public byte[] send(byte[] payload) throws IOException {
+        ByteBuffer response = send(ByteBuffer.wrap(payload));
+        byte[] bytes = new byte[response.remaining()];
+        response.get(bytes);
+        return bytes;
+    }
+
+    private void readFully(int length) throws IOException {
+        if (reply.capacity() < length) {
+            reply = ByteBuffer.allocateDirect(length);
+        }
+        reply.clear().limit(length);
+        while (reply.hasRemaining()) {
+            if (channel.read(reply) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
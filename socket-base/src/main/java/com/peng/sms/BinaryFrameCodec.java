@@ -0,0 +1,103 @@
+package com.peng.sms;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary mode of the echo protocol. After the one-byte {@link CommonConstant#BINARY_MAGIC}
+ * greeting, each request is a 4-byte big-endian length followed by that many payload bytes,
+ * and each reply is a frame of the same shape carrying the ASCII-uppercased payload.
+ * <p>
+ * Frames are decoded, transformed and re-encoded entirely inside reusable direct buffers:
+ * no {@code String}, no charset decoding and no per-message heap allocation.
+ * One codec per connection; not thread-safe.
+ */
+public class BinaryFrameCodec {
+
+    public static final int HEADER_BYTES = Integer.BYTES;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    // write mode: holds at most one partially received frame between calls
+    private ByteBuffer inbound = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+    // read mode: encoded replies not yet written to the channel
+    private ByteBuffer outbound = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE).flip();
+
+    /**
+     * Consumes every byte of {@code src} and appends a reply frame for each request frame it completes.
+     */
+    public void decode(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            if (!inbound.hasRemaining()) {
+                inbound = grow(inbound.flip(), inbound.capacity() * 2);
+            }
+            int chunk = Math.min(src.remaining(), inbound.remaining());
+            inbound.put(src.slice(src.position(), chunk));
+            src.position(src.position() + chunk);
+
+            inbound.flip();
+            while (inbound.remaining() >= HEADER_BYTES) {
+                int length = inbound.getInt(inbound.position());
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                if (inbound.remaining() < HEADER_BYTES + length) {
+                    break;
+                }
+                int start = inbound.position() + HEADER_BYTES;
+                toUpperCase(inbound, start, length);
+                appendFrame(inbound.slice(start, length));
+                inbound.position(start + length);
+            }
+            inbound.compact();
+        }
+    }
+
+    /**
+     * Encoded replies in read mode, to be drained with {@code channel.write(outbound())}.
+     */
+    public ByteBuffer outbound() {
+        return outbound;
+    }
+
+    public boolean hasOutbound() {
+        return outbound.hasRemaining();
+    }
+
+    /**
+     * Writes one request frame for {@code payload} into {@code target}, which must have room for it.
+     */
+    public static void encode(ByteBuffer payload, ByteBuffer target) {
+        target.putInt(payload.remaining());
+        target.put(payload);
+    }
+
+    private void appendFrame(ByteBuffer payload) {
+        outbound.compact();
+        int needed = HEADER_BYTES + payload.remaining();
+        if (outbound.remaining() < needed) {
+            outbound = grow(outbound.flip(), Math.max(outbound.capacity() * 2, outbound.position() + needed));
+        }
+        encode(payload, outbound);
+        outbound.flip();
+    }
+
+    // ASCII-only, in place: the binary mode never decodes the payload into characters
+    static void toUpperCase(ByteBuffer buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer.get(i);
+            if (b >= 'a' && b <= 'z') {
+                buffer.put(i, (byte) (b - ('a' - 'A')));
+            }
+        }
+    }
+
+    // expects src in read mode, returns the copy in write mode
+    private static ByteBuffer grow(ByteBuffer src, int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+        bigger.put(src);
+        return bigger;
+    }
+}
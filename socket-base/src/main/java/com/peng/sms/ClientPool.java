@@ -0,0 +1,99 @@
+package com.peng.sms;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fixed-size pool of {@link LineClient} connections for multi-threaded callers.
+ * Connections are opened lazily, reused across calls and replaced when a call fails.
+ */
+public class ClientPool implements Closeable {
+
+    /**
+     * Work to run against a borrowed connection.
+     */
+    @FunctionalInterface
+    public interface ClientCall<T> {
+        T call(LineClient client) throws IOException;
+    }
+
+    private final String host;
+    private final int port;
+    private final BlockingQueue<LineClient> idle;
+    // one permit per connection not currently borrowed, whether idle or not yet opened
+    private final Semaphore available;
+    private volatile boolean closed;
+
+    public ClientPool(String host, int port, int size) {
+        this.host = host;
+        this.port = port;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.available = new Semaphore(size);
+    }
+
+    /**
+     * Borrows a connection, runs {@code call} on it and returns it to the pool.
+     */
+    public <T> T execute(ClientCall<T> call) throws IOException, InterruptedException {
+        LineClient client = borrow();
+        try {
+            T result = call.call(client);
+            release(client);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            // the connection is in an unknown state, drop it and free its slot
+            discard(client);
+            throw e;
+        }
+    }
+
+    public String send(String message) throws IOException, InterruptedException {
+        return execute(client -> client.send(message));
+    }
+
+    private LineClient borrow() throws IOException, InterruptedException {
+        // - Block until a connection is returned or a slot frees up
+        available.acquire();
+        try {
+            if (closed) {
+                throw new IOException("Pool is closed");
+            }
+            LineClient client = idle.poll();
+            return client != null ? client : new LineClient(host, port);
+        } catch (IOException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    private void release(LineClient client) {
+        if (closed || !client.isOpen()) {
+            discard(client);
+        } else {
+            idle.add(client);
+            available.release();
+        }
+    }
+
+    private void discard(LineClient client) {
+        try {
+            client.close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+        available.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LineClient client;
+        while ((client = idle.poll()) != null) {
+            client.close();
+        }
+    }
+}
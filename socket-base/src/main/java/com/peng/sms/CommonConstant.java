@@ -4,5 +4,11 @@ public interface CommonConstant {
     // the server port
     static final int SERVER_PORT = 18007;
     static final String LOCAL_HOST = "localhost";
+    // first byte of a binary-framed connection; text lines never start with it
+    static final byte BINARY_MAGIC = (byte) 0xB1;
+    // first byte of a file-streaming connection; like BINARY_MAGIC, never the start of a text line
+    static final byte FILE_MAGIC = (byte) 0xB2;
+    // system property naming the directory served by the GET command
+    static final String FILE_ROOT_PROPERTY = "socket.file.root";
 
 }
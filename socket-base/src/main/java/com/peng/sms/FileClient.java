@@ -0,0 +1,91 @@
+package com.peng.sms;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.peng.sms.CommonConstant.FILE_MAGIC;
+
+/**
+ * Client side of the {@code GET} command; the connection opens with {@link CommonConstant#FILE_MAGIC}. The body is moved from the socket into the
+ * target file with {@link FileChannel#transferFrom}, so it never lands in the heap either.
+ * Not thread-safe.
+ */
+public class FileClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer single = ByteBuffer.allocate(1);
+
+    public FileClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        ByteBuffer greeting = ByteBuffer.wrap(new byte[]{FILE_MAGIC});
+        while (greeting.hasRemaining()) {
+            channel.write(greeting);
+        }
+    }
+
+    /**
+     * Copies the whole remote file into {@code target}, returning the number of bytes received.
+     */
+    public long download(String remotePath, Path target) throws IOException {
+        return request(FileStreamer.COMMAND + remotePath, target);
+    }
+
+    public long downloadRange(String remotePath, long offset, long length, Path target) throws IOException {
+        return request(FileStreamer.COMMAND + remotePath + " " + offset + " " + length, target);
+    }
+
+    private long request(String command, Path target) throws IOException {
+        ByteBuffer request = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.UTF_8));
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+
+        String header = readHeader();
+        if (!header.startsWith("OK ")) {
+            throw new IOException(header);
+        }
+        long length = Long.parseLong(header.substring(3));
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long received = 0;
+            while (received < length) {
+                long n = file.transferFrom(channel, received, length - received);
+                if (n == 0) {
+                    throw new IOException("Server closed the connection after " + received + " of " + length + " bytes");
+                }
+                received += n;
+            }
+            return received;
+        }
+    }
+
+    // byte at a time so nothing after the header is consumed
+    private String readHeader() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+        while (true) {
+            single.clear();
+            if (channel.read(single) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            byte b = single.get(0);
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
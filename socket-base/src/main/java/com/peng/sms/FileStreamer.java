@@ -0,0 +1,169 @@
+package com.peng.sms;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static com.peng.sms.CommonConstant.FILE_ROOT_PROPERTY;
+
+/**
+ * The {@code GET} command, used to ship large blobs such as snapshots. It is only understood on
+ * connections that open with {@link CommonConstant#FILE_MAGIC}, so an echoed text line that happens
+ * to start with "GET " is never taken for a file request. Every line of such a connection is one of:
+ * <pre>
+ * GET &lt;path&gt;                    whole file, sent with FileChannel.transferTo
+ * GET &lt;path&gt; &lt;offset&gt; &lt;length&gt;  byte range, sent from a memory-mapped window
+ * </pre>
+ * The reply is a header line {@code OK <length>} followed by exactly that many raw bytes,
+ * or a single {@code ERR <reason>} line. Paths are resolved under the directory named by the
+ * {@link CommonConstant#FILE_ROOT_PROPERTY} system property (default: working directory); after
+ * resolving symlinks they must still lie under it and name a regular file. File bytes never pass
+ * through the Java heap.
+ */
+public class FileStreamer {
+
+    public static final String COMMAND = "GET ";
+
+    // mapped windows are capped so a huge range never needs one huge mapping
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Opens the file named by {@code line}. The caller sends {@link Transfer#header()} and then
+     * drains the transfer; on failure the message of the exception is the reason for the ERR line.
+     */
+    public static Transfer open(String line) throws IOException {
+        String[] parts = line.startsWith(COMMAND) ? line.substring(COMMAND.length()).trim().split("\\s+") : new String[0];
+        if (parts.length != 1 && parts.length != 3) {
+            throw new IOException("usage: GET <path> [<offset> <length>]");
+        }
+        Path path = resolve(parts[0]);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("not a regular file");
+        }
+
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = file.size();
+            if (parts.length == 1) {
+                return new Transfer(file, 0, size, false);
+            }
+            long offset = Long.parseLong(parts[1]);
+            long length = Long.parseLong(parts[2]);
+            if (offset < 0 || length < 0 || offset > size) {
+                throw new IOException("range outside of file");
+            }
+            return new Transfer(file, offset, Math.min(length, size - offset), true);
+        } catch (NumberFormatException e) {
+            file.close();
+            throw new IOException("invalid range");
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // the real path of a request under the file root, which it must not leave
+    private static Path resolve(String requested) throws IOException {
+        try {
+            Path root = Paths.get(System.getProperty(FILE_ROOT_PROPERTY, ".")).toRealPath();
+            Path path = root.resolve(requested).normalize();
+            if (!path.startsWith(root)) {
+                throw new IOException("path outside of file root");
+            }
+            // - Check again after resolving symlinks, so a link under the root cannot lead out of it
+            path = path.toRealPath();
+            if (!path.startsWith(root)) {
+                throw new IOException("path outside of file root");
+            }
+            return path;
+        } catch (InvalidPathException e) {
+            // e.g. a NUL byte; unchecked, and callers only expect a reason for the ERR line
+            throw new IOException("invalid path");
+        }
+    }
+
+    public static ByteBuffer errorLine(IOException e) {
+        String reason = e instanceof NoSuchFileException ? "no such file" : e.getMessage();
+        return ByteBuffer.wrap(("ERR " + reason + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * One file (or range of it) being written to a socket. Works with blocking and
+     * non-blocking channels: {@link #writeTo} sends what the channel accepts and reports
+     * whether anything is left.
+     */
+    public static class Transfer implements AutoCloseable {
+
+        private final FileChannel file;
+        private final long length;
+        private boolean mapped;
+        private long position;
+        private long remaining;
+        private MappedByteBuffer window;
+
+        Transfer(FileChannel file, long offset, long length, boolean mapped) {
+            this.file = file;
+            this.length = length;
+            this.mapped = mapped;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        public ByteBuffer header() {
+            return ByteBuffer.wrap(("OK " + length + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Writes as much as {@code channel} accepts. Returns true, and closes the file, once every byte is sent.
+         */
+        public boolean writeTo(WritableByteChannel channel) throws IOException {
+            while (remaining > 0) {
+                long written;
+                if (mapped) {
+                    if (window == null || !window.hasRemaining()) {
+                        window = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(remaining, MAP_WINDOW_BYTES));
+                    }
+                    written = channel.write(window);
+                } else {
+                    // - Kernel copies straight from the page cache to the socket
+                    written = file.transferTo(position, remaining, channel);
+                    if (written == 0 && blocking(channel)) {
+                        // sendfile on a virtual thread's socket can report 0 instead of parking;
+                        // a blocking write of a mapped window parks correctly and is still off-heap
+                        mapped = true;
+                        continue;
+                    }
+                }
+                if (written == 0) {
+                    // non-blocking socket is full
+                    return false;
+                }
+                position += written;
+                remaining -= written;
+            }
+            close();
+            return true;
+        }
+
+        private static boolean blocking(WritableByteChannel channel) {
+            return !(channel instanceof SelectableChannel selectable) || selectable.isBlocking();
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            file.close();
+        }
+    }
+}
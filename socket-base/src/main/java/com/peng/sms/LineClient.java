@@ -0,0 +1,94 @@
+package com.peng.sms;
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A long-lived connection speaking the line protocol. One TCP handshake is
+ * paid up front; after that {@link #send(String)} is a single round trip and
+ * {@link #pipeline(List)} keeps many requests in flight, reading replies as it writes.
+ * <p>
+ * Not thread-safe: share connections between threads through {@link ClientPool}.
+ */
+public class LineClient implements Closeable {
+
+    // unanswered request chars per pipeline; well inside the socket buffers of both sides,
+    // so a server that blocks writing replies never waits on a client that is still writing
+    static final int MAX_IN_FLIGHT_CHARS = 32 * 1024;
+
+    private final Socket socket;
+    private final BufferedWriter out;
+    private final BufferedReader in;
+
+    public LineClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.socket.setKeepAlive(true);
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    public String send(String message) throws IOException {
+        out.write(message);
+        out.write('\n');
+        out.flush();
+        return readReply();
+    }
+
+    /**
+     * Sends {@code messages} without waiting for each reply and returns the replies in order.
+     * At most {@link #MAX_IN_FLIGHT_CHARS} of requests are unanswered at a time (one request
+     * always goes out, however long); beyond that the oldest reply is read before writing more.
+     */
+    public List<String> pipeline(List<String> messages) throws IOException {
+        List<String> responses = new ArrayList<>(messages.size());
+        Deque<Integer> inFlight = new ArrayDeque<>();
+        long inFlightChars = 0;
+        for (String message : messages) {
+            int chars = message.length() + 1;
+            while (!inFlight.isEmpty() && inFlightChars + chars > MAX_IN_FLIGHT_CHARS) {
+                out.flush();
+                responses.add(readReply());
+                inFlightChars -= inFlight.poll();
+            }
+            out.write(message);
+            out.write('\n');
+            inFlight.add(chars);
+            inFlightChars += chars;
+        }
+        out.flush();
+
+        while (responses.size() < messages.size()) {
+            responses.add(readReply());
+        }
+        return responses;
+    }
+
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    private String readReply() throws IOException {
+        String response = in.readLine();
+        if (response == null) {
+            throw new IOException("Server closed the connection");
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
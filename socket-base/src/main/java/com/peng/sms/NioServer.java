@@ -0,0 +1,341 @@
+package com.peng.sms;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.peng.sms.CommonConstant.BINARY_MAGIC;
+import static com.peng.sms.CommonConstant.FILE_MAGIC;
+import static com.peng.sms.CommonConstant.SERVER_PORT;
+
+/**
+ * Non-blocking server mode: one acceptor selector hands new connections to a
+ * small set of event-loop threads, each multiplexing its channels on a single
+ * {@link Selector}. Speaks the same newline-terminated uppercase-echo protocol
+ * as {@link Server}, but keeps every connection open for many lines. Connections
+ * opening with {@link CommonConstant#BINARY_MAGIC} switch to {@link BinaryFrameCodec}, and
+ * connections opening with {@link CommonConstant#FILE_MAGIC} send {@link FileStreamer} requests.
+ * <p>
+ * A connection is not read while replies to its previous read are still queued, so a client
+ * that stops reading holds at most one read buffer's worth of replies; lines longer than
+ * {@link #MAX_LINE_BYTES} close the connection.
+ */
+public class NioServer {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private static volatile Selector acceptSelector;
+    private static volatile EventLoop[] eventLoops;
+
+    public static void startServer() {
+        startServer(SERVER_PORT, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Binds {@code port} and runs the accept loop on the calling thread until {@link #stop()} is called.
+     */
+    public static void startServer(int port, int eventLoopCount) {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            EventLoop[] loops = new EventLoop[Math.max(1, eventLoopCount)];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(Selector.open());
+                new Thread(loops[i], "NioServer-loop-" + i).start();
+            }
+            eventLoops = loops;
+            acceptSelector = selector;
+            System.out.println("NIO server start successly, Listening on port :" + port + " with " + loops.length + " event loops");
+
+            int next = 0;
+            while (selector.isOpen()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid() || !key.isAcceptable()) {
+                        continue;
+                    }
+                    SocketChannel channel;
+                    while ((channel = serverChannel.accept()) != null) {
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        // - Round-robin the connection onto an event loop
+                        loops[next].register(channel);
+                        next = (next + 1) % loops.length;
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // stop() closed the selector while we were blocked in select()
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            EventLoop[] loops = eventLoops;
+            if (loops != null) {
+                for (EventLoop loop : loops) {
+                    loop.close();
+                }
+            }
+            eventLoops = null;
+            acceptSelector = null;
+        }
+    }
+
+    public static void stop() {
+        Selector selector = acceptSelector;
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            System.out.println("NIO server stopped");
+        }
+    }
+
+    /**
+     * One selector thread owning a disjoint set of connections.
+     */
+    static class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        // shared by every connection on this loop, only touched from the loop thread
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        void close() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).release();
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                // already closing
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        attach(channel);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // - Only this connection is lost; the loop keeps serving the others
+                            closeQuietly(key);
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                // server stopped
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // a client that disconnected while queued only loses its own channel, never the loop
+        private void attach(SocketChannel channel) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new Connection());
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // already closed by the peer
+                }
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                closeQuietly(key);
+                return;
+            }
+            readBuffer.flip();
+            // - The first byte of a connection picks the protocol
+            if (!connection.detected && readBuffer.hasRemaining()) {
+                connection.detected = true;
+                byte first = readBuffer.get(readBuffer.position());
+                if (first == BINARY_MAGIC) {
+                    readBuffer.get();
+                    connection.binary = new BinaryFrameCodec();
+                } else if (first == FILE_MAGIC) {
+                    readBuffer.get();
+                    connection.files = true;
+                }
+            }
+            if (connection.binary != null) {
+                connection.binary.decode(readBuffer);
+                write(key);
+                return;
+            }
+            // - Split on '\n', process every complete line and queue the reply
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    connection.handle(connection.takeLine());
+                } else if (connection.line.size() < MAX_LINE_BYTES) {
+                    connection.line.write(b);
+                } else {
+                    closeQuietly(key);
+                    return;
+                }
+            }
+            write(key);
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+
+            if (connection.binary != null) {
+                channel.write(connection.binary.outbound());
+                // - Stop reading until the queued replies are sent
+                key.interestOps(connection.binary.hasOutbound() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                return;
+            }
+            Object head;
+            while ((head = connection.outbound.peek()) != null) {
+                if (head instanceof String request) {
+                    // - Open a requested file only once it is next to send, so a connection
+                    //   holds at most one open file however many GETs it pipelines
+                    connection.outbound.poll();
+                    connection.open(request);
+                    continue;
+                }
+                boolean done;
+                if (head instanceof FileStreamer.Transfer transfer) {
+                    done = transfer.writeTo(channel);
+                } else {
+                    ByteBuffer buffer = (ByteBuffer) head;
+                    channel.write(buffer);
+                    done = !buffer.hasRemaining();
+                }
+                if (!done) {
+                    // - Socket buffer is full, wait for OP_WRITE before sending the rest
+                    //   and read nothing more until then
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.outbound.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private static void closeQuietly(SelectionKey key) {
+            key.cancel();
+            ((Connection) key.attachment()).release();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // nothing left to do with a dead channel
+            }
+        }
+    }
+
+    /**
+     * Per-connection state: the protocol in use, the partially received line and replies not yet flushed.
+     */
+    static class Connection {
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        // ByteBuffer replies, GET lines not yet opened and FileStreamer.Transfer bodies, in send order
+        private final Deque<Object> outbound = new ArrayDeque<>();
+        private boolean detected;
+        // set when the connection opened with BINARY_MAGIC
+        private BinaryFrameCodec binary;
+        // set when the connection opened with FILE_MAGIC: every line is a GET request
+        private boolean files;
+
+        String takeLine() {
+            byte[] bytes = line.toByteArray();
+            line.reset();
+            int length = bytes.length;
+            // tolerate "\r\n" from clients using the platform line separator
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        void handle(String clientMessage) {
+            if (!files) {
+                outbound.add(ByteBuffer.wrap((Server.process(clientMessage) + "\n").getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+            outbound.add(clientMessage);
+        }
+
+        // replaces a GET line at the head of outbound with its reply
+        void open(String request) {
+            try {
+                FileStreamer.Transfer transfer = FileStreamer.open(request);
+                outbound.addFirst(transfer);
+                outbound.addFirst(transfer.header());
+            } catch (IOException e) {
+                outbound.addFirst(FileStreamer.errorLine(e));
+            }
+        }
+
+        // closes files of transfers cut short by a disconnect
+        void release() {
+            for (Object pending : outbound) {
+                if (pending instanceof FileStreamer.Transfer transfer) {
+                    try {
+                        transfer.close();
+                    } catch (IOException ignored) {
+                        // the connection is gone either way
+                    }
+                }
+            }
+            outbound.clear();
+        }
+    }
+}
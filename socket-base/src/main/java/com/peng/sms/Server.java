@@ -13,6 +13,14 @@ import static com.peng.sms.CommonConstant.SERVER_PORT;
 
 public class Server {
 
+    public static void startServer(ServerMode mode) {
+        switch (mode) {
+            case NIO -> NioServer.startServer();
+            case VIRTUAL_THREAD -> VirtualThreadServer.startServer();
+            default -> startServer();
+        }
+    }
+
     public static void startServer() {
         try {
             ServerSocket serverSocket = new ServerSocket(SERVER_PORT);
@@ -33,7 +41,7 @@ public class Server {
                 System.out.println("Received: " + clientMessage);
 
                 // - Process request (e.g., convert to uppercase)
-                String response = clientMessage.toUpperCase();
+                String response = process(clientMessage);
 
                 // - Send response back to client
                 printWriter.println(response);
@@ -47,5 +55,8 @@ public class Server {
         }
     }
 
+    // the line protocol shared by every server mode
+    static String process(String clientMessage) {
+        return clientMessage.toUpperCase();
+    }
 }
-
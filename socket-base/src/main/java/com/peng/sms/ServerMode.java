@@ -0,0 +1,13 @@
+package com.peng.sms;
+
+/**
+ * How {@link Server#startServer(ServerMode)} serves connections.
+ */
+public enum ServerMode {
+    // one blocking connection, one line, then exit
+    CLASSIC,
+    // selector event loops, many long-lived connections per thread
+    NIO,
+    // one virtual thread per connection, blocking reads
+    VIRTUAL_THREAD
+}
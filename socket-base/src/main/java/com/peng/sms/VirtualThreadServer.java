@@ -0,0 +1,170 @@
+package com.peng.sms;
+
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.peng.sms.CommonConstant.BINARY_MAGIC;
+import static com.peng.sms.CommonConstant.FILE_MAGIC;
+import static com.peng.sms.CommonConstant.SERVER_PORT;
+
+/**
+ * Blocking-style server mode where every accepted connection gets its own
+ * virtual thread. Sessions keep the plain {@code readLine()}/{@code println()}
+ * code of {@link Server}, but stay open for many request/response lines and
+ * never pin a platform thread while waiting on the network. Connections opening
+ * with {@link CommonConstant#BINARY_MAGIC} are served by {@link BinaryFrameCodec}, and
+ * those opening with {@link CommonConstant#FILE_MAGIC} by {@link FileStreamer}.
+ */
+public class VirtualThreadServer {
+
+    private static volatile ServerSocketChannel serverChannel;
+    // open sessions, closed by stop() so the executor can finish and startServer() return
+    private static final Set<SocketChannel> openSessions = ConcurrentHashMap.newKeySet();
+
+    public static void startServer() {
+        startServer(SERVER_PORT);
+    }
+
+    /**
+     * Binds {@code port} and accepts connections on the calling thread until {@link #stop()} is called.
+     */
+    public static void startServer(int port) {
+        try (ServerSocketChannel channel = ServerSocketChannel.open();
+             ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            channel.bind(new InetSocketAddress(port), 4096);
+            serverChannel = channel;
+            System.out.println("Virtual-thread server start successly, Listening on port :" + port);
+
+            while (channel.isOpen()) {
+                // - Accept client connection and hand it off immediately
+                SocketChannel socket = channel.accept();
+                openSessions.add(socket);
+                if (!channel.isOpen()) {
+                    // stop() ran between accept() and add(), and did not see this session
+                    socket.close();
+                }
+                sessions.execute(() -> serve(socket));
+            }
+        } catch (AsynchronousCloseException e) {
+            // stop() closed the channel while we were blocked in accept()
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            serverChannel = null;
+        }
+    }
+
+    public static void stop() {
+        ServerSocketChannel channel = serverChannel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            for (SocketChannel session : openSessions) {
+                try {
+                    session.close();
+                } catch (IOException ignored) {
+                    // the session thread sees the close and ends
+                }
+            }
+            System.out.println("Virtual-thread server stopped");
+        }
+    }
+
+    static void serve(SocketChannel channel) {
+        try (channel) {
+            channel.socket().setTcpNoDelay(true);
+
+            // - The first byte of a connection picks the protocol
+            ByteBuffer first = ByteBuffer.allocate(1);
+            if (channel.read(first) < 0) {
+                return;
+            }
+            if (first.get(0) == BINARY_MAGIC) {
+                serveBinary(channel);
+            } else if (first.get(0) == FILE_MAGIC) {
+                serveFiles(channel);
+            } else {
+                serveText(channel, first.get(0));
+            }
+        } catch (IOException e) {
+            // client reset the connection, or stop() closed it; nothing to send back
+        } finally {
+            openSessions.remove(channel);
+        }
+    }
+
+    private static void serveText(SocketChannel channel, byte firstByte) throws IOException {
+        InputStream input = new SequenceInputStream(
+                new ByteArrayInputStream(new byte[]{firstByte}), channel.socket().getInputStream());
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(input));
+        PrintWriter printWriter = new PrintWriter(channel.socket().getOutputStream(), true);
+
+        // - Serve lines until the client closes its side
+        String clientMessage;
+        while ((clientMessage = bufferedReader.readLine()) != null) {
+            printWriter.println(Server.process(clientMessage));
+        }
+    }
+
+    private static void serveFiles(SocketChannel channel) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(channel.socket().getInputStream()));
+
+        // - Serve GET requests until the client closes its side
+        String clientMessage;
+        while ((clientMessage = bufferedReader.readLine()) != null) {
+            sendFile(channel, clientMessage);
+        }
+    }
+
+    private static void sendFile(SocketChannel channel, String clientMessage) throws IOException {
+        FileStreamer.Transfer transfer;
+        try {
+            transfer = FileStreamer.open(clientMessage);
+        } catch (IOException e) {
+            writeFully(channel, FileStreamer.errorLine(e));
+            return;
+        }
+        try (transfer) {
+            writeFully(channel, transfer.header());
+            // blocking channel: returns once the whole body is sent
+            transfer.writeTo(channel);
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void serveBinary(SocketChannel channel) throws IOException {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(8 * 1024);
+
+        // - Serve frames until the client closes its side
+        while (channel.read(readBuffer.clear()) >= 0) {
+            codec.decode(readBuffer.flip());
+            while (codec.hasOutbound()) {
+                channel.write(codec.outbound());
+            }
+        }
+    }
+}
@@ -10,6 +10,16 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.peng.sms.CommonConstant.LOCAL_HOST;
 import static com.peng.sms.CommonConstant.SERVER_PORT;
@@ -72,6 +82,316 @@ public class ServerTest extends TestCase {
     }
 
 
+    @Test
+    public void testNioServerKeepsConnectionsOpen() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 1;
+        new Thread(() -> NioServer.startServer(port, 2), "NioServer").start();
+        Thread.sleep(500);
+
+        try (Socket first = new Socket(LOCAL_HOST, port);
+             Socket second = new Socket(LOCAL_HOST, port);
+             PrintWriter firstOut = new PrintWriter(first.getOutputStream(), true);
+             BufferedReader firstIn = new BufferedReader(new InputStreamReader(first.getInputStream()));
+             PrintWriter secondOut = new PrintWriter(second.getOutputStream(), true);
+             BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()))) {
+
+            // Both clients stay connected and exchange several lines each
+            for (int i = 0; i < 3; i++) {
+                firstOut.println("first " + i);
+                secondOut.println("second " + i);
+                assertEquals("FIRST " + i, firstIn.readLine());
+                assertEquals("SECOND " + i, secondIn.readLine());
+            }
+        } finally {
+            NioServer.stop();
+        }
+    }
+
+    @Test
+    public void testNioServerClosesConnectionOnOverlongLine() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 9;
+        new Thread(() -> NioServer.startServer(port, 1), "NioServer").start();
+        Thread.sleep(500);
+
+        try (Socket flooder = new Socket(LOCAL_HOST, port);
+             LineClient other = new LineClient(LOCAL_HOST, port)) {
+            byte[] endless = new byte[NioServer.MAX_LINE_BYTES + 1];
+            Arrays.fill(endless, (byte) 'x');
+            try {
+                flooder.getOutputStream().write(endless);
+                flooder.getOutputStream().flush();
+                assertEquals(-1, flooder.getInputStream().read());
+            } catch (IOException e) {
+                // reset by the server is just as good as an orderly close
+            }
+            // The event loop keeps serving its other connections
+            assertEquals("STILL UP", other.send("still up"));
+        } finally {
+            NioServer.stop();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadServerServesManyLines() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 2;
+        new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer").start();
+        Thread.sleep(500);
+
+        try (Socket socket = new Socket(LOCAL_HOST, port);
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+
+            // The session is not closed after the first reply
+            for (int i = 0; i < 100; i++) {
+                out.println("line " + i);
+                assertEquals("LINE " + i, in.readLine());
+            }
+        } finally {
+            VirtualThreadServer.stop();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadServerStopsWithClientsConnected() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 10;
+        Thread server = new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer");
+        server.start();
+        Thread.sleep(500);
+
+        try (LineClient idle = new LineClient(LOCAL_HOST, port)) {
+            assertEquals("CONNECTED", idle.send("connected"));
+            VirtualThreadServer.stop();
+            // startServer returns even though the client never disconnects
+            server.join(5000);
+            assertFalse(server.isAlive());
+        }
+    }
+
+    @Test
+    public void testPipelinedClient() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 3;
+        new Thread(() -> NioServer.startServer(port, 1), "NioServer").start();
+        Thread.sleep(500);
+
+        try (LineClient client = new LineClient(LOCAL_HOST, port)) {
+            List<String> requests = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                requests.add("pipelined " + i);
+            }
+            // All 50 requests go out before the first reply is read
+            List<String> responses = client.pipeline(requests);
+            assertEquals(50, responses.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals("PIPELINED " + i, responses.get(i));
+            }
+            assertEquals("AGAIN", client.send("again"));
+        } finally {
+            NioServer.stop();
+        }
+    }
+
+    @Test
+    public void testLargePipelineAgainstBlockingServer() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 11;
+        new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer").start();
+        Thread.sleep(500);
+
+        try (LineClient client = new LineClient(LOCAL_HOST, port)) {
+            // Several MB each way: far more than both socket buffers can hold at once
+            String padding = "x".repeat(200);
+            List<String> requests = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                requests.add(i + padding);
+            }
+            List<String> responses = client.pipeline(requests);
+            assertEquals(20_000, responses.size());
+            assertEquals("19999" + padding.toUpperCase(), responses.get(19_999));
+        } finally {
+            VirtualThreadServer.stop();
+        }
+    }
+
+    @Test
+    public void testClientPoolSharedAcrossThreads() throws Exception {
+        int port = SERVER_PORT + 4;
+        new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer").start();
+        Thread.sleep(500);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try (ClientPool pool = new ClientPool(LOCAL_HOST, port, 4)) {
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String message = "pooled " + i;
+                replies.add(callers.submit(() -> pool.send(message)));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals("POOLED " + i, replies.get(i).get());
+            }
+        } finally {
+            callers.shutdownNow();
+            VirtualThreadServer.stop();
+        }
+    }
+
+    @Test
+    public void testBinaryAndTextClientsShareNioPort() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 5;
+        new Thread(() -> NioServer.startServer(port, 2), "NioServer").start();
+        Thread.sleep(500);
+
+        try (BinaryClient binary = new BinaryClient(LOCAL_HOST, port);
+             LineClient text = new LineClient(LOCAL_HOST, port)) {
+            assertEquals("HELLO FRAME", new String(binary.send("hello frame".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+            assertEquals("HELLO LINE", text.send("hello line"));
+
+            // A frame larger than the server's read buffer arrives in several chunks
+            byte[] large = new byte[200_000];
+            Arrays.fill(large, (byte) 'x');
+            byte[] expected = new byte[large.length];
+            Arrays.fill(expected, (byte) 'X');
+            assertTrue(Arrays.equals(expected, binary.send(large)));
+            assertEquals(0, binary.send(new byte[0]).length);
+        } finally {
+            NioServer.stop();
+        }
+    }
+
+    @Test
+    public void testBinaryFramesOnVirtualThreadServer() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 6;
+        new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer").start();
+        Thread.sleep(500);
+
+        try (BinaryClient binary = new BinaryClient(LOCAL_HOST, port);
+             LineClient text = new LineClient(LOCAL_HOST, port)) {
+            for (int i = 0; i < 20; i++) {
+                assertEquals("FRAME " + i, new String(binary.send(("frame " + i).getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+            }
+            assertEquals("STILL TEXT", text.send("still text"));
+        } finally {
+            VirtualThreadServer.stop();
+        }
+    }
+
+    @Test
+    public void testFileStreamingOnNioServer() throws IOException, InterruptedException {
+        assertFileStreaming(SERVER_PORT + 7, true);
+    }
+
+    @Test
+    public void testFileStreamingOnVirtualThreadServer() throws IOException, InterruptedException {
+        assertFileStreaming(SERVER_PORT + 8, false);
+    }
+
+    private void assertFileStreaming(int port, boolean nio) throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("socket-files");
+        byte[] blob = new byte[5 * 1024 * 1024];
+        new Random(42).nextBytes(blob);
+        Files.write(root.resolve("snapshot.bin"), blob);
+        Files.createDirectory(root.resolve("subdir"));
+        Path secret = Files.createTempFile("socket-secret", ".txt");
+        Files.createSymbolicLink(root.resolve("outside"), secret);
+        System.setProperty(CommonConstant.FILE_ROOT_PROPERTY, root.toString());
+
+        if (nio) {
+            new Thread(() -> NioServer.startServer(port, 1), "NioServer").start();
+        } else {
+            new Thread(() -> VirtualThreadServer.startServer(port), "VirtualThreadServer").start();
+        }
+        Thread.sleep(500);
+
+        try (FileClient client = new FileClient(LOCAL_HOST, port);
+             LineClient text = new LineClient(LOCAL_HOST, port)) {
+            // A text line that looks like a request is only echoed
+            assertEquals("GET SNAPSHOT.BIN", text.send("GET snapshot.bin"));
+
+            Path whole = root.resolve("whole.bin");
+            assertEquals(blob.length, client.download("snapshot.bin", whole));
+            assertTrue(Arrays.equals(blob, Files.readAllBytes(whole)));
+
+            Path range = root.resolve("range.bin");
+            assertEquals(1000, client.downloadRange("snapshot.bin", 4096, 1000, range));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(blob, 4096, 5096), Files.readAllBytes(range)));
+
+            // Failures are reported on the same connection, which stays usable
+            IOException missing = assertThrows(IOException.class, () -> client.download("missing.bin", whole));
+            assertEquals("ERR no such file", missing.getMessage());
+            IOException escape = assertThrows(IOException.class, () -> client.download("../etc/passwd", whole));
+            assertEquals("ERR path outside of file root", escape.getMessage());
+            IOException link = assertThrows(IOException.class, () -> client.download("outside", whole));
+            assertEquals("ERR path outside of file root", link.getMessage());
+            IOException directory = assertThrows(IOException.class, () -> client.download("subdir", whole));
+            assertEquals("ERR not a regular file", directory.getMessage());
+            assertEquals(blob.length, client.download("snapshot.bin", whole));
+        } finally {
+            if (nio) {
+                NioServer.stop();
+            } else {
+                VirtualThreadServer.stop();
+            }
+            System.clearProperty(CommonConstant.FILE_ROOT_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testNioServerSurvivesInvalidPath() throws IOException, InterruptedException {
+        int port = SERVER_PORT + 12;
+        new Thread(() -> NioServer.startServer(port, 1), "NioServer").start();
+        Thread.sleep(500);
+
+        try (Socket files = new Socket(LOCAL_HOST, port);
+             LineClient other = new LineClient(LOCAL_HOST, port)) {
+            files.setSoTimeout(5000);
+            files.getOutputStream().write(CommonConstant.FILE_MAGIC);
+            files.getOutputStream().write("GET a\0b\n".getBytes(StandardCharsets.UTF_8));
+            files.getOutputStream().flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(files.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("ERR invalid path", reader.readLine());
+            // The single event loop is still alive for every connection
+            assertEquals("STILL UP", other.send("still up"));
+        } finally {
+            NioServer.stop();
+        }
+    }
+
+    @Test
+    public void testNioServerOpensOneFileAtATime() throws IOException, InterruptedException {
+        Path fds = Path.of("/proc/self/fd");
+        if (!Files.isDirectory(fds)) {
+            return;
+        }
+        int port = SERVER_PORT + 13;
+        Path root = Files.createTempDirectory("socket-files");
+        Files.write(root.resolve("snapshot.bin"), new byte[8 * 1024 * 1024]);
+        System.setProperty(CommonConstant.FILE_ROOT_PROPERTY, root.toString());
+        new Thread(() -> NioServer.startServer(port, 1), "NioServer").start();
+        Thread.sleep(500);
+
+        try (Socket hoarder = new Socket(LOCAL_HOST, port)) {
+            long before = openFiles(fds);
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                requests.append("GET snapshot.bin\n");
+            }
+            // Never read: the first transfer fills the socket and the rest wait their turn
+            hoarder.getOutputStream().write(CommonConstant.FILE_MAGIC);
+            hoarder.getOutputStream().write(requests.toString().getBytes(StandardCharsets.UTF_8));
+            hoarder.getOutputStream().flush();
+            Thread.sleep(500);
+            long opened = openFiles(fds) - before;
+            assertTrue("files opened: " + opened, opened <= 2);
+        } finally {
+            NioServer.stop();
+            System.clearProperty(CommonConstant.FILE_ROOT_PROPERTY);
+        }
+    }
+
+    private static long openFiles(Path fds) throws IOException {
+        try (var entries = Files.list(fds)) {
+            return entries.count();
+        }
+    }
+
     //Test error handling for invalid connections
     @Test
     public void testInvalidPort() {